@@ -1,5 +1,8 @@
 package com.bei.annotation;
 
+import com.bei.common.cache.CacheKeyGenerator;
+import com.bei.common.cache.DefaultCacheKeyGenerator;
+
 import java.lang.annotation.*;
 
 @Target({ElementType.METHOD})
@@ -8,4 +11,52 @@ import java.lang.annotation.*;
 public @interface Cache {
     long expire() default 60 * 1000;
     String name() default "";
+
+    /**
+     * 缓存key生成策略，对应的实现类需要注册为spring bean
+     * */
+    Class<? extends CacheKeyGenerator> keyGenerator() default DefaultCacheKeyGenerator.class;
+
+    /**
+     * 缓存未命中时是否只允许一个请求加载数据，
+     * 本节点内的并发请求共享同一次加载，其他节点通过redis锁等待加载结果
+     * */
+    boolean singleFlight() default false;
+
+    /**
+     * 加载锁的持有时长(ms)，也是其他请求等待加载结果的最长时间
+     * */
+    long lockTimeout() default 3000;
+
+    /**
+     * 提前刷新系数，大于0时会在缓存过期前按概率在后台刷新，值越大刷新越早，一般取1
+     * */
+    double earlyRefresh() default 0;
+
+    /**
+     * 是否缓存最终的响应体，命中时直接将字节写入响应，不再进行对象映射
+     * */
+    boolean raw() default false;
+
+    /**
+     * raw模式下是否压缩保存响应体，客户端支持gzip时直接输出压缩数据
+     * */
+    boolean gzip() default false;
+
+    /**
+     * 缓存条目的标签(SpEL)，可以引用方法参数和#result，
+     * 加载过程中通过CacheTags.tag添加的标签会与之合并
+     * */
+    String[] tags() default {};
+
+    /**
+     * 是否根据缓存版本生成ETag，请求的If-None-Match与之相同时直接返回304，
+     * 不查询redis和数据库
+     * */
+    boolean etag() default false;
+
+    /**
+     * 是否使用缓存的条件(SpEL)，可以引用方法参数，结果为false时直接调用方法，不读写缓存
+     * */
+    String condition() default "";
 }
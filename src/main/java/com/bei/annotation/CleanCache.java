@@ -6,5 +6,15 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface CleanCache {
+    /**
+     * 要清除的缓存名称前缀，该名称下的所有缓存都会失效
+     * */
     String name() default "";
+
+    /**
+     * 要清除的缓存标签(SpEL)，只清除带有这些标签的缓存条目，
+     * 可以引用方法参数和#result，结果为集合或数组时每个元素都是一个标签，
+     * 方法执行过程中通过CacheTags.tag添加的标签会与之合并，用于只有修改前才知道的数据
+     * */
+    String[] tags() default {};
 }
@@ -1,32 +1,112 @@
 package com.bei.common.aop;
 
-import com.alibaba.fastjson.JSON;
 import com.bei.annotation.Cache;
 import com.bei.annotation.CleanCache;
-import com.bei.common.CommonResult;
+import com.bei.common.cache.CacheEntry;
+import com.bei.common.cache.CacheEvictEvent;
+import com.bei.common.cache.CacheMetadata;
+import com.bei.common.cache.CacheMetrics;
+import com.bei.common.cache.CacheNamespace;
+import com.bei.common.cache.CacheTagEvaluator;
+import com.bei.common.cache.CacheTagIndex;
+import com.bei.common.cache.CacheTags;
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.cache.LocalCache;
+import com.bei.common.codec.ValueCodec;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Aspect
 @Component
 @Slf4j
 public class CacheAspect {
 
+    private static final String LOCK_PREFIX = "cache:lock:";
+
+    /** 等待其他节点加载数据时的轮询间隔(ms) */
+    private static final long LOCK_WAIT_INTERVAL = 50;
+
+    /** 只有锁仍由自己持有时才释放 */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
 
+    @Autowired
+    private RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Autowired
+    private LocalCache localCache;
+
+    @Autowired
+    private CachedResponseWriter responseWriter;
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @Autowired
+    private ValueCodec valueCodec;
+
+    @Autowired
+    private CacheTagIndex cacheTagIndex;
+
+    @Autowired
+    private CacheTagEvaluator cacheTagEvaluator;
+
+    @Autowired
+    private CacheNamespace cacheNamespace;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    /** 方法对应的缓存元数据，避免每次调用都进行反射解析 */
+    private final Map<Method, CacheMetadata> cacheMetadata = new ConcurrentHashMap<>();
+
+    private final Map<Method, CleanCache> cleanCacheMetadata = new ConcurrentHashMap<>();
+
+    /** 本节点正在加载的缓存key，同一个key的并发请求共享一次加载 */
+    private final Map<String, CompletableFuture<CacheEntry>> loading = new ConcurrentHashMap<>();
+
+    /** 本节点正在后台刷新的缓存key */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /** 提前刷新使用的后台线程池，队列满时放弃本次刷新 */
+    private final ExecutorService refreshExecutor = new ThreadPoolExecutor(1, 4, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(64));
+
     @Pointcut("@annotation(com.bei.annotation.Cache)")
     public void cachePt() {}
 
@@ -35,61 +115,239 @@ public class CacheAspect {
 
     @Around("cachePt()")
     public Object cacheAround(ProceedingJoinPoint point) throws Throwable {
-        Signature signature = point.getSignature();
-        String className = point.getTarget().getClass().getSimpleName();
-        String methodName = signature.getName();
-        Class[] parameterTypes = new Class[point.getArgs().length];
-        Object[] args = point.getArgs();
-        String params = "";
-        for (int i = 0; i < args.length; i++) {
-            if (args[i] != null) {
-                params += JSON.toJSONString(args[i]);
-                parameterTypes[i] = args[i].getClass();
-            } else {
-                parameterTypes[i] = null;
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        CacheMetadata metadata = cacheMetadata.computeIfAbsent(method, m -> {
+            Cache cache = m.getAnnotation(Cache.class);
+            return new CacheMetadata(m, cache, applicationContext.getBean(cache.keyGenerator()));
+        });
+        if (!cacheTagEvaluator.condition(metadata.getCondition(), method, point.getArgs())) {
+            return point.proceed();
+        }
+        String key = metadata.key(cacheNamespace.generation(metadata.getName()), point.getArgs());
+        // 版本号在加载数据之前读取，ETag不会比缓存的数据更新
+        String etag = metadata.isEtag() ? metadata.etag(key, cacheNamespace.version()) : null;
+        if (etag != null && responseWriter.notModified(etag)) {
+            cacheMetrics.notModified(metadata.getName());
+            return null;
+        }
+        CacheEntry entry = lookup(metadata, key);
+        if (entry != null) {
+            if (entry.shouldRefresh(metadata.getEarlyRefresh())) {
+                refresh(metadata, key, point.getTarget(), point.getArgs());
             }
+            return respond(entry, etag);
+        }
+        cacheMetrics.miss(metadata.getName());
+        if (!metadata.isSingleFlight()) {
+            return respond(load(metadata, key, point.getArgs(), point::proceed), etag);
+        }
+        CompletableFuture<CacheEntry> future = new CompletableFuture<>();
+        CompletableFuture<CacheEntry> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            log.info("等待本节点其他请求加载缓存, {}", metadata.getDescription());
+            try {
+                return respond(existing.get(metadata.getLockTimeout(), TimeUnit.MILLISECONDS), etag);
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            } catch (TimeoutException e) {
+                // 加载请求可能已经挂起，不再等待，由本请求自行加载
+                log.info("等待本节点其他请求加载缓存超时, {}", metadata.getDescription());
+                entry = lookup(metadata, key);
+                return respond(entry != null ? entry : load(metadata, key, point.getArgs(), point::proceed), etag);
+            }
+        }
+        try {
+            entry = loadWithLock(metadata, key, point.getArgs(), point::proceed);
+            future.complete(entry);
+            return respond(entry, etag);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
         }
-        Method method = point.getSignature().getDeclaringType().getMethod(methodName, parameterTypes);
-        Cache cache = method.getAnnotation(Cache.class);
-        long expire = cache.expire();
-        String name = cache.name();
-        String key = name + ":" + params;
-        String value = redisTemplate.opsForValue().get(key);
-        if (StringUtils.isNotEmpty(value)) {
-            log.info("缓存命中， {}, {}", className, methodName);
-            return JSON.parseObject(value, CommonResult.class);
-        }
-        Object proceed = point.proceed();
-        redisTemplate.opsForValue().set(key, JSON.toJSONString(proceed), Duration.ofMillis(expire));
-        log.info("未命中缓存，保存本次返回结果, {}, {}", className, methodName);
-        return proceed;
     }
 
     @Around("cleanPt()")
     public Object around(ProceedingJoinPoint point) throws Throwable {
-        Signature signature = point.getSignature();
-        String className = point.getTarget().getClass().getSimpleName();
-        String methodName = signature.getName();
-        Class[] parameterTypes = new Class[point.getArgs().length];
-        Object[] args = point.getArgs();
-        String params = "";
-        for (int i = 0; i < args.length; i++) {
-            if (args[i] != null) {
-                params += JSON.toJSONString(args[i]);
-                parameterTypes[i] = args[i].getClass();
-            } else {
-                parameterTypes[i] = null;
-            }
-        }
-        Method method = point.getSignature().getDeclaringType().getMethod(methodName, parameterTypes);
-        CleanCache annotation = method.getAnnotation(CleanCache.class);
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        CleanCache annotation = cleanCacheMetadata.computeIfAbsent(method, m -> m.getAnnotation(CleanCache.class));
         String name = annotation.name();
-        Set<String> keys = redisTemplate.keys(name + "*");
-        Object proceed = point.proceed();
-        if (keys != null && keys.size() > 0) {
-            log.info("数据库更新，清除缓存, {}, {}", className, methodName);
-            redisTemplate.delete(keys);
+        Set<String> outer = CacheTags.begin();
+        Object proceed;
+        Set<String> collected;
+        try {
+            proceed = point.proceed();
+        } finally {
+            collected = CacheTags.end(outer);
+        }
+        cacheNamespace.bumpVersion();
+        if (!name.isEmpty()) {
+            List<String> bumped = cacheNamespace.bump(name);
+            bumped.forEach(cacheMetrics::invalidate);
+            log.info("数据库更新，清除缓存, {}.{}, {}", method.getDeclaringClass().getSimpleName(), method.getName(), bumped);
+            // 本节点立即失效，其他节点通过订阅频道失效
+            localCache.invalidate(name);
+            redisTemplate.convertAndSend(LocalCache.INVALIDATE_CHANNEL, name);
+        }
+        Set<String> tags = cacheTagEvaluator.evaluate(annotation.tags(), method, point.getArgs(), proceed);
+        tags.addAll(collected);
+        if (!tags.isEmpty()) {
+            List<String> evicted = cacheTagIndex.evict(tags);
+            log.info("数据库更新，按标签清除缓存, {}.{}, {}, 共{}条", method.getDeclaringClass().getSimpleName(),
+                    method.getName(), tags, evicted.size());
+            if (!evicted.isEmpty()) {
+                evicted.stream()
+                        .map(CacheMetadata::nameOf)
+                        .filter(Objects::nonNull)
+                        .forEach(cacheMetrics::invalidate);
+                localCache.invalidateKeys(evicted);
+                redisTemplate.convertAndSend(LocalCache.EVICT_CHANNEL, String.join("\n", evicted));
+            }
+            applicationContext.publishEvent(new CacheEvictEvent(tags));
         }
         return proceed;
     }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 返回缓存的结果，raw模式下直接将响应体写入当前请求的响应
+     * @param etag 响应的ETag，为null时不设置
+     * */
+    private Object respond(CacheEntry entry, String etag) throws IOException {
+        if (entry.isRaw() && responseWriter.write(entry, etag)) {
+            return null;
+        }
+        if (etag != null) {
+            responseWriter.etag(etag);
+        }
+        return entry.getResult(valueCodec);
+    }
+
+    /**
+     * 依次查询本地缓存和redis，redis命中时写入本地缓存
+     * */
+    private CacheEntry lookup(CacheMetadata metadata, String key) {
+        Object local = localCache.get(metadata.getName(), key);
+        if (local != null) {
+            log.debug("本地缓存命中， {}", metadata.getDescription());
+            cacheMetrics.localHit(metadata.getName());
+            return (CacheEntry) local;
+        }
+        CacheEntry entry = CacheEntry.decode(byteRedisTemplate.opsForValue().get(key));
+        if (entry != null) {
+            log.debug("缓存命中， {}", metadata.getDescription());
+            cacheMetrics.redisHit(metadata.getName());
+            localCache.put(metadata.getName(), key, entry, metadata.getExpire());
+        }
+        return entry;
+    }
+
+    /**
+     * 加载数据并写入两级缓存
+     * */
+    private CacheEntry load(CacheMetadata metadata, String key, Object[] args, Loader loader) throws Throwable {
+        long start = System.currentTimeMillis();
+        Set<String> outer = CacheTags.begin();
+        Object result;
+        Set<String> tags;
+        try {
+            result = loader.load();
+        } finally {
+            tags = CacheTags.end(outer);
+        }
+        long delta = System.currentTimeMillis() - start;
+        tags.addAll(cacheTagEvaluator.evaluate(metadata.getTags(), metadata.getMethod(), args, result));
+        CacheEntry entry = metadata.isRaw()
+                ? CacheEntry.raw(responseWriter.serialize(result), metadata.isGzip(), delta, metadata.getExpire())
+                : CacheEntry.of(result, valueCodec.encode(result), delta, metadata.getExpire());
+        cacheMetrics.load(metadata.getName(), delta, entry.getBody().length);
+        if (tags.isEmpty()) {
+            byteRedisTemplate.opsForValue().set(key, entry.encode(), Duration.ofMillis(metadata.getExpire()));
+        } else {
+            cacheTagIndex.store(key, entry.encode(), metadata.getExpire(), tags);
+        }
+        localCache.put(metadata.getName(), key, entry, metadata.getExpire());
+        log.debug("未命中缓存，保存本次返回结果, {}", metadata.getDescription());
+        return entry;
+    }
+
+    /**
+     * 持有redis锁加载数据，未获得锁时等待持有锁的节点写入缓存，超时后自行加载
+     * */
+    private CacheEntry loadWithLock(CacheMetadata metadata, String key, Object[] args, Loader loader) throws Throwable {
+        String lockKey = LOCK_PREFIX + key;
+        String token = UUID.randomUUID().toString();
+        boolean locked = Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(lockKey, token, Duration.ofMillis(metadata.getLockTimeout())));
+        if (!locked) {
+            long deadline = System.currentTimeMillis() + metadata.getLockTimeout();
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(LOCK_WAIT_INTERVAL);
+                CacheEntry entry = lookup(metadata, key);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            log.info("等待其他节点加载缓存超时, {}", metadata.getDescription());
+        }
+        try {
+            CacheEntry entry = lookup(metadata, key);
+            return entry != null ? entry : load(metadata, key, args, loader);
+        } finally {
+            if (locked) {
+                redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            }
+        }
+    }
+
+    /**
+     * 在后台重新加载即将过期的缓存，同一时间每个key在集群中只会有一次刷新
+     * 刷新直接调用目标对象的方法，不经过其他切面
+     * */
+    private void refresh(CacheMetadata metadata, String key, Object target, Object[] args) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                String lockKey = LOCK_PREFIX + key;
+                String token = UUID.randomUUID().toString();
+                try {
+                    if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                            .setIfAbsent(lockKey, token, Duration.ofMillis(metadata.getLockTimeout())))) {
+                        try {
+                            log.info("提前刷新缓存, {}", metadata.getDescription());
+                            load(metadata, key, args, () -> invoke(metadata.getMethod(), target, args));
+                        } finally {
+                            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+                        }
+                    }
+                } catch (Throwable e) {
+                    log.warn("提前刷新缓存失败, {}", metadata.getDescription(), e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader {
+        Object load() throws Throwable;
+    }
 }
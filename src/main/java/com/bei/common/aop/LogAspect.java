@@ -25,6 +25,10 @@ public class LogAspect {
     @Before("logPt()")
     public void doBefore(JoinPoint joinPoint) {
         ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        // 缓存预热等非http请求的调用不记录
+        if (attributes == null) {
+            return;
+        }
         HttpServletRequest request = attributes.getRequest();
         log.info("URL: {}", request.getRequestURL().toString());
         log.info("HTTP METHOD: {}", request.getMethod());
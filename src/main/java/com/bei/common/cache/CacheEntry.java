@@ -0,0 +1,133 @@
+package com.bei.common.cache;
+
+import com.bei.common.CommonResult;
+import com.bei.common.codec.ValueCodec;
+import com.bei.utils.GzipUtils;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 缓存条目，除返回值外还记录加载耗时和过期时间，用于判断是否需要提前刷新
+ * redis中的存储格式为 版本(1字节) 标志位(1字节) 加载耗时(8字节) 过期时间(8字节) 数据
+ * */
+@Getter
+public class CacheEntry {
+
+    private static final byte VERSION = 1;
+
+    /** 数据为最终的响应体 */
+    private static final byte FLAG_RAW = 1;
+
+    /** 数据经过gzip压缩 */
+    private static final byte FLAG_GZIP = 2;
+
+    private static final int HEADER_LENGTH = 18;
+
+    /** 缓存的数据，普通模式下为编码后的返回值，raw模式下为最终响应体 */
+    private final byte[] body;
+
+    private final boolean raw;
+
+    private final boolean gzip;
+
+    /** 加载数据的耗时(ms) */
+    private final long delta;
+
+    /** 过期时间戳(ms) */
+    private final long expireAt;
+
+    private volatile Object result;
+
+    private CacheEntry(byte[] body, boolean raw, boolean gzip, long delta, long expireAt, Object result) {
+        this.body = body;
+        this.raw = raw;
+        this.gzip = gzip;
+        this.delta = delta;
+        this.expireAt = expireAt;
+        this.result = result;
+    }
+
+    /**
+     * 根据新加载的返回值创建缓存条目
+     * @param result 返回值
+     * @param body 编码后的返回值
+     * @param delta 加载耗时(ms)
+     * @param expire 过期时长(ms)
+     * */
+    public static CacheEntry of(Object result, byte[] body, long delta, long expire) {
+        return new CacheEntry(body, false, false, delta, System.currentTimeMillis() + expire, result);
+    }
+
+    /**
+     * 创建保存最终响应体的缓存条目，条目中不保留返回值对象
+     * @param body 序列化后的响应体
+     * @param gzip 是否压缩保存
+     * @param delta 加载耗时(ms)
+     * @param expire 过期时长(ms)
+     * */
+    public static CacheEntry raw(byte[] body, boolean gzip, long delta, long expire) {
+        return new CacheEntry(gzip ? GzipUtils.compress(body) : body, true, gzip, delta,
+                System.currentTimeMillis() + expire, null);
+    }
+
+    /**
+     * 解析redis中保存的缓存条目
+     * @return 格式不正确时返回null
+     * */
+    public static CacheEntry decode(byte[] encoded) {
+        if (encoded == null || encoded.length < HEADER_LENGTH || encoded[0] != VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        buffer.get();
+        byte flags = buffer.get();
+        long delta = buffer.getLong();
+        long expireAt = buffer.getLong();
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+        return new CacheEntry(body, (flags & FLAG_RAW) != 0, (flags & FLAG_GZIP) != 0, delta, expireAt, null);
+    }
+
+    public byte[] encode() {
+        byte flags = (byte) ((raw ? FLAG_RAW : 0) | (gzip ? FLAG_GZIP : 0));
+        return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+                .put(VERSION)
+                .put(flags)
+                .putLong(delta)
+                .putLong(expireAt)
+                .put(body)
+                .array();
+    }
+
+    /**
+     * 获取未压缩的数据
+     * */
+    public byte[] getPlainBody() {
+        return gzip ? GzipUtils.decompress(body) : body;
+    }
+
+    /**
+     * 获取缓存的返回值，从redis读取的条目在第一次访问时解码
+     * @param codec 写入时使用的编码，没有类型信息的旧数据按CommonResult解析
+     * */
+    public Object getResult(ValueCodec codec) {
+        if (result == null) {
+            result = codec.decode(getPlainBody(), CommonResult.class);
+        }
+        return result;
+    }
+
+    /**
+     * 按概率判断是否需要提前刷新，越接近过期时间、加载耗时越长，刷新概率越大
+     * @param beta 提前刷新系数，不大于0时不刷新
+     * */
+    public boolean shouldRefresh(double beta) {
+        if (beta <= 0) {
+            return false;
+        }
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return System.currentTimeMillis() - delta * beta * Math.log(random) >= expireAt;
+    }
+}
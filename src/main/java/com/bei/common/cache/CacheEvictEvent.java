@@ -0,0 +1,19 @@
+package com.bei.common.cache;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * 按标签清除缓存后发布的事件，此时被@CleanCache标注的方法已经执行完毕
+ * 其他基于同样数据的内存结构可以监听该事件更新自己
+ * */
+@Getter
+public class CacheEvictEvent {
+
+    private final Set<String> tags;
+
+    public CacheEvictEvent(Set<String> tags) {
+        this.tags = tags;
+    }
+}
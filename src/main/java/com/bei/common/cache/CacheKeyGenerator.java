@@ -0,0 +1,17 @@
+package com.bei.common.cache;
+
+import java.lang.reflect.Method;
+
+/**
+ * 缓存key生成策略，实现类需要注册为spring bean，
+ * 并通过{@link com.bei.annotation.Cache#keyGenerator()}指定
+ * */
+public interface CacheKeyGenerator {
+
+    /**
+     * 根据方法参数生成缓存key，返回值不包含缓存名称和版本号
+     * @param method 被缓存的方法
+     * @param args 本次调用的参数
+     * */
+    String generate(Method method, Object[] args);
+}
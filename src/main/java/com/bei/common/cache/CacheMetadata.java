@@ -0,0 +1,92 @@
+package com.bei.common.cache;
+
+import com.bei.annotation.Cache;
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 被@Cache标注方法的元数据，每个方法只解析一次
+ * */
+@Getter
+public class CacheMetadata {
+
+    /** 缓存key中名称之后的版本号部分 */
+    private static final Pattern GENERATION = Pattern.compile(":v\\d+:");
+
+    private final Method method;
+
+    private final Cache cache;
+
+    private final String name;
+
+    private final long expire;
+
+    private final CacheKeyGenerator keyGenerator;
+
+    private final boolean singleFlight;
+
+    private final long lockTimeout;
+
+    private final double earlyRefresh;
+
+    private final boolean raw;
+
+    private final boolean gzip;
+
+    private final String[] tags;
+
+    private final boolean etag;
+
+    private final String condition;
+
+    /** 日志中使用的方法描述 */
+    private final String description;
+
+    public CacheMetadata(Method method, Cache cache, CacheKeyGenerator keyGenerator) {
+        this.method = method;
+        this.cache = cache;
+        this.name = cache.name();
+        this.expire = cache.expire();
+        this.keyGenerator = keyGenerator;
+        this.singleFlight = cache.singleFlight();
+        this.lockTimeout = cache.lockTimeout();
+        this.earlyRefresh = cache.earlyRefresh();
+        this.raw = cache.raw();
+        this.gzip = cache.gzip();
+        this.tags = cache.tags();
+        this.etag = cache.etag();
+        this.condition = cache.condition();
+        this.description = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    /**
+     * 生成本次调用的缓存key
+     * @param generation 缓存名称当前的版本号
+     * @param args 调用参数
+     * */
+    public String key(long generation, Object[] args) {
+        return name + ":v" + generation + ":" + keyGenerator.generate(method, args);
+    }
+
+    /**
+     * 从缓存key中取出缓存名称，缓存key的格式为 名称:v版本号:参数摘要
+     * 名称本身可以包含":v"，以第一个":v版本号:"作为分隔
+     * @return 不是缓存key时返回null
+     * */
+    public static String nameOf(String key) {
+        Matcher matcher = GENERATION.matcher(key);
+        return matcher.find() ? key.substring(0, matcher.start()) : null;
+    }
+
+    /**
+     * 生成本次调用的ETag，由缓存key和数据版本号组成，任一变化时ETag都会变化
+     * @param key 本次调用的缓存key
+     * @param version 当前的数据版本号
+     * */
+    public String etag(String key, long version) {
+        return "\"" + key.substring(name.length() + 1) + "." + version + "\"";
+    }
+}
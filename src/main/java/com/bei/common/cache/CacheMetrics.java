@@ -0,0 +1,139 @@
+package com.bei.common.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按缓存名称统计命中、未命中、加载耗时、序列化大小和失效次数
+ * 指标注册到micrometer，同时提供进程内的查询接口
+ * */
+@Component
+public class CacheMetrics {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public void localHit(String name) {
+        meters(name).localHits.increment();
+    }
+
+    public void redisHit(String name) {
+        meters(name).redisHits.increment();
+    }
+
+    /**
+     * 记录一次客户端缓存命中，即返回了304
+     * */
+    public void notModified(String name) {
+        meters(name).notModified.increment();
+    }
+
+    public void miss(String name) {
+        meters(name).misses.increment();
+    }
+
+    /**
+     * 记录一次加载
+     * @param millis 加载耗时(ms)
+     * @param size 序列化后的大小(字节)
+     * */
+    public void load(String name, long millis, int size) {
+        Meters m = meters(name);
+        m.load.record(millis, TimeUnit.MILLISECONDS);
+        m.size.record(size);
+    }
+
+    public void invalidate(String name) {
+        meters(name).invalidations.increment();
+    }
+
+    /**
+     * 获取所有缓存名称的统计信息
+     * */
+    public Map<String, CacheStats> snapshot() {
+        Map<String, CacheStats> snapshot = new TreeMap<>();
+        meters.forEach((name, m) -> snapshot.put(name, m.stats(name)));
+        return snapshot;
+    }
+
+    /**
+     * 获取指定缓存名称的统计信息
+     * @return 该名称还没有任何记录时返回null
+     * */
+    public CacheStats stats(String name) {
+        Meters m = meters.get(name);
+        return m == null ? null : m.stats(name);
+    }
+
+    private Meters meters(String name) {
+        return meters.computeIfAbsent(name, n -> new Meters(meterRegistry, n));
+    }
+
+    private static class Meters {
+
+        private final Counter localHits;
+        private final Counter redisHits;
+        private final Counter misses;
+        private final Counter notModified;
+        private final Counter invalidations;
+        private final Timer load;
+        private final DistributionSummary size;
+
+        Meters(MeterRegistry registry, String name) {
+            localHits = Counter.builder("app.cache.gets").tag("name", name).tag("result", "hit").tag("tier", "local")
+                    .register(registry);
+            redisHits = Counter.builder("app.cache.gets").tag("name", name).tag("result", "hit").tag("tier", "redis")
+                    .register(registry);
+            misses = Counter.builder("app.cache.gets").tag("name", name).tag("result", "miss").tag("tier", "none")
+                    .register(registry);
+            notModified = Counter.builder("app.cache.gets").tag("name", name).tag("result", "hit").tag("tier", "client")
+                    .register(registry);
+            invalidations = Counter.builder("app.cache.invalidations").tag("name", name).register(registry);
+            load = Timer.builder("app.cache.load").tag("name", name)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            size = DistributionSummary.builder("app.cache.entry.size").tag("name", name).baseUnit("bytes")
+                    .register(registry);
+        }
+
+        CacheStats stats(String name) {
+            CacheStats stats = new CacheStats();
+            stats.setName(name);
+            stats.setLocalHits((long) localHits.count());
+            stats.setRedisHits((long) redisHits.count());
+            stats.setMisses((long) misses.count());
+            stats.setNotModified((long) notModified.count());
+            long hits = stats.getLocalHits() + stats.getRedisHits() + stats.getNotModified();
+            long total = hits + stats.getMisses();
+            stats.setHitRate(total == 0 ? 0 : (double) hits / total);
+            HistogramSnapshot snapshot = load.takeSnapshot();
+            stats.setLoadCount(snapshot.count());
+            stats.setLoadMean(snapshot.mean(TimeUnit.MILLISECONDS));
+            stats.setLoadMax(snapshot.max(TimeUnit.MILLISECONDS));
+            Map<Double, Double> percentiles = new LinkedHashMap<>();
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS));
+            }
+            stats.setLoadPercentiles(percentiles);
+            stats.setSizeMean(size.mean());
+            stats.setSizeMax(size.max());
+            stats.setInvalidations((long) invalidations.count());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.bei.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 缓存命名空间版本管理
+ * 每个缓存名称在redis的哈希表中维护一个版本号，版本号是缓存key的一部分，
+ * 清除缓存时只需要递增版本号，旧版本的数据由过期时间和后台任务清理
+ * */
+@Component
+@Slf4j
+public class CacheNamespace implements MessageListener {
+
+    /** 保存所有缓存名称版本号的哈希表，同时作为缓存名称的登记表 */
+    public static final String GENERATION_KEY = "cache:generation";
+
+    /** 数据版本号，任何缓存清除都会递增，用于生成ETag */
+    public static final String VERSION_KEY = "cache:version";
+
+    /** 数据版本号变化的广播频道 */
+    public static final String VERSION_CHANNEL = "cache:version";
+
+    /** 递增所有以指定前缀开头的缓存名称的版本号，返回被递增的名称 */
+    private static final RedisScript<List> BUMP_SCRIPT = new DefaultRedisScript<>(
+            "local bumped = {}\n" +
+            "for _, name in ipairs(redis.call('HKEYS', KEYS[1])) do\n" +
+            "  if string.sub(name, 1, string.len(ARGV[1])) == ARGV[1] then\n" +
+            "    redis.call('HINCRBY', KEYS[1], name, 1)\n" +
+            "    table.insert(bumped, name)\n" +
+            "  end\n" +
+            "end\n" +
+            "return bumped", List.class);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    /** 本地保存的版本号，收到失效通知时移除，过期时间兜底防止漏收通知 */
+    private final Cache<String, Long> generations = Caffeine.newBuilder()
+            .expireAfterWrite(60, TimeUnit.SECONDS)
+            .build();
+
+    /** 本地保存的数据版本号，只有VERSION_KEY一项 */
+    private final Cache<String, Long> versions = Caffeine.newBuilder()
+            .expireAfterWrite(60, TimeUnit.SECONDS)
+            .build();
+
+    /** 本节点收到失效通知的次数，用于避免把通知之前读到的版本号写回本地 */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * 获取缓存名称当前的版本号，名称第一次使用时会登记到redis中
+     * @param name 缓存名称
+     * */
+    public long generation(String name) {
+        Long generation = generations.getIfPresent(name);
+        if (generation != null) {
+            return generation;
+        }
+        long epoch = invalidations.get();
+        generation = redisTemplate.opsForHash().increment(GENERATION_KEY, name, 0);
+        if (invalidations.get() == epoch) {
+            generations.put(name, generation);
+        }
+        return generation;
+    }
+
+    /**
+     * 递增所有以prefix开头的缓存名称的版本号，使其旧数据全部失效
+     * @param prefix 缓存名称前缀
+     * @return 版本号被递增的缓存名称
+     * */
+    @SuppressWarnings("unchecked")
+    public List<String> bump(String prefix) {
+        List<String> bumped = redisTemplate.execute(BUMP_SCRIPT, Collections.singletonList(GENERATION_KEY), prefix);
+        invalidate(prefix);
+        return bumped == null ? Collections.emptyList() : bumped;
+    }
+
+    /**
+     * 获取当前的数据版本号，本地有记录时不访问redis
+     * */
+    public long version() {
+        Long version = versions.getIfPresent(VERSION_KEY);
+        if (version != null) {
+            return version;
+        }
+        long epoch = invalidations.get();
+        String value = redisTemplate.opsForValue().get(VERSION_KEY);
+        version = value == null ? 0 : Long.parseLong(value);
+        if (invalidations.get() == epoch) {
+            versions.put(VERSION_KEY, version);
+        }
+        return version;
+    }
+
+    /**
+     * 递增数据版本号并通知其他节点，之前生成的ETag全部失效
+     * */
+    public void bumpVersion() {
+        Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+        invalidateVersion();
+        redisTemplate.convertAndSend(VERSION_CHANNEL, String.valueOf(version));
+    }
+
+    /**
+     * 获取所有已登记的缓存名称及其版本号
+     * */
+    public Map<String, Long> generations() {
+        return redisTemplate.<String, String>opsForHash().entries(GENERATION_KEY).entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> Long.valueOf(e.getValue())));
+    }
+
+    private void invalidate(String prefix) {
+        invalidations.incrementAndGet();
+        generations.asMap().keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    private void invalidateVersion() {
+        invalidations.incrementAndGet();
+        versions.invalidateAll();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        if (VERSION_CHANNEL.equals(new String(message.getChannel(), StandardCharsets.UTF_8))) {
+            invalidateVersion();
+            return;
+        }
+        invalidate(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
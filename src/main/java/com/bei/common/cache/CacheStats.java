@@ -0,0 +1,41 @@
+package com.bei.common.cache;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * 单个缓存名称的统计信息快照，时间单位为ms，大小单位为字节
+ * */
+@Data
+public class CacheStats {
+
+    private String name;
+
+    private long localHits;
+
+    private long redisHits;
+
+    private long misses;
+
+    /** 返回304的次数 */
+    private long notModified;
+
+    /** 命中率，包括本地缓存、redis和304 */
+    private double hitRate;
+
+    private long loadCount;
+
+    private double loadMean;
+
+    private double loadMax;
+
+    /** 加载耗时的分位数，key为分位(0.5, 0.95, 0.99) */
+    private Map<Double, Double> loadPercentiles;
+
+    private double sizeMean;
+
+    private double sizeMax;
+
+    private long invalidations;
+}
@@ -0,0 +1,30 @@
+package com.bei.common.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 缓存统计监控端点 /actuator/cachestats
+ * */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+
+    @Autowired
+    private CacheMetrics cacheMetrics;
+
+    @ReadOperation
+    public Map<String, CacheStats> stats() {
+        return cacheMetrics.snapshot();
+    }
+
+    @ReadOperation
+    public CacheStats stats(@Selector String name) {
+        return cacheMetrics.stats(name);
+    }
+}
@@ -0,0 +1,81 @@
+package com.bei.common.cache;
+
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 计算注解中声明的缓存标签和缓存条件表达式(SpEL)
+ * 表达式中可以通过参数名引用方法参数，通过#result引用返回值，
+ * 标签表达式的结果为集合或数组时每个元素都作为一个标签
+ * */
+@Component
+public class CacheTagEvaluator {
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * 计算标签表达式
+     * @param tags 标签表达式
+     * @param method 被调用的方法
+     * @param args 调用参数
+     * @param result 方法返回值
+     * */
+    public Set<String> evaluate(String[] tags, Method method, Object[] args, Object result) {
+        Set<String> evaluated = new HashSet<>();
+        if (tags.length == 0) {
+            return evaluated;
+        }
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(null, method, args, parameterNameDiscoverer);
+        context.setVariable("result", result);
+        for (String tag : tags) {
+            Object value = expressions.computeIfAbsent(tag, parser::parseExpression).getValue(context);
+            if (value instanceof Collection) {
+                ((Collection<?>) value).forEach(v -> add(evaluated, v));
+            } else if (value instanceof Object[]) {
+                for (Object v : (Object[]) value) {
+                    add(evaluated, v);
+                }
+            } else {
+                add(evaluated, value);
+            }
+        }
+        return evaluated;
+    }
+
+    /**
+     * 计算缓存条件表达式
+     * @param condition 条件表达式，为空时总是使用缓存
+     * @param method 被调用的方法
+     * @param args 调用参数
+     * */
+    public boolean condition(String condition, Method method, Object[] args) {
+        if (condition.isEmpty()) {
+            return true;
+        }
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(null, method, args, parameterNameDiscoverer);
+        return Boolean.TRUE.equals(expressions.computeIfAbsent(condition, parser::parseExpression)
+                .getValue(context, Boolean.class));
+    }
+
+    private void add(Set<String> tags, Object value) {
+        if (value != null) {
+            tags.add(value.toString());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.bei.common.cache;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 缓存标签索引
+ * 每个标签在redis中对应一个有序集合，保存带有该标签的缓存key，分数为条目的过期时间(ms)，
+ * 按标签清除时只删除集合中的key
+ * */
+@Component
+public class CacheTagIndex {
+
+    /** 标签集合前缀，与之前使用普通集合的 cache:tag: 区分，旧集合由过期时间清理 */
+    private static final String TAG_PREFIX = "cache:tags:";
+
+    /** 清除时每批删除的缓存key数量，避免一次操作阻塞redis */
+    private static final int EVICT_BATCH_SIZE = 200;
+
+    /**
+     * 写入缓存条目并登记到各个标签集合中，同时移除集合中已经过期的条目，
+     * 标签集合只保存未过期的条目，其过期时间不短于其中的条目
+     * KEYS[1]为缓存key，其余为标签集合，ARGV[1]为缓存数据，ARGV[2]为过期时间(ms)，ARGV[3]为当前时间(ms)
+     * */
+    private static final RedisScript<Long> STORE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+            "local ttl = tonumber(ARGV[2])\n" +
+            "local expireAt = tonumber(ARGV[3]) + ttl\n" +
+            "for i = 2, #KEYS do\n" +
+            "  redis.call('ZREMRANGEBYSCORE', KEYS[i], '-inf', ARGV[3])\n" +
+            "  redis.call('ZADD', KEYS[i], expireAt, KEYS[1])\n" +
+            "  if redis.call('PTTL', KEYS[i]) < ttl then\n" +
+            "    redis.call('PEXPIRE', KEYS[i], ttl)\n" +
+            "  end\n" +
+            "end\n" +
+            "return #KEYS - 1", Long.class);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    /**
+     * 写入缓存条目并登记标签
+     * @param key 缓存key
+     * @param value 缓存数据
+     * @param expire 过期时间(ms)
+     * @param tags 标签
+     * */
+    public void store(String key, byte[] value, long expire, Collection<String> tags) {
+        List<String> keys = new ArrayList<>(tags.size() + 1);
+        keys.add(key);
+        tags.forEach(tag -> keys.add(TAG_PREFIX + tag));
+        byteRedisTemplate.execute(STORE_SCRIPT, keys, value, bytes(String.valueOf(expire)),
+                bytes(String.valueOf(System.currentTimeMillis())));
+    }
+
+    /**
+     * 清除带有任一标签的所有缓存条目，每个标签分批删除，
+     * 清除过程中新登记的条目也会被删除
+     * @return 被清除的缓存key
+     * */
+    public List<String> evict(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> evicted = new ArrayList<>();
+        for (String tag : tags) {
+            String tagKey = TAG_PREFIX + tag;
+            redisTemplate.opsForZSet().removeRangeByScore(tagKey, Double.NEGATIVE_INFINITY,
+                    System.currentTimeMillis());
+            while (true) {
+                Set<String> keys = redisTemplate.opsForZSet().range(tagKey, 0, EVICT_BATCH_SIZE - 1);
+                if (keys == null || keys.isEmpty()) {
+                    break;
+                }
+                redisTemplate.unlink(keys);
+                redisTemplate.opsForZSet().remove(tagKey, keys.toArray());
+                evicted.addAll(keys);
+            }
+        }
+        return evicted;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
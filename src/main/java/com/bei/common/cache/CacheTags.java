@@ -0,0 +1,55 @@
+package com.bei.common.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 收集缓存条目依赖的实体标签，例如 dish:1 category:2
+ * 被@Cache标注的方法在加载数据时调用{@link #tag(String, Object)}登记用到的数据，
+ * 之后可以通过@CleanCache(tags = ...)只清除依赖这些数据的缓存，
+ * 被@CleanCache标注的方法同样可以调用{@link #tag(String, Object)}添加要清除的标签
+ * */
+public final class CacheTags {
+
+    private static final ThreadLocal<Set<String>> TAGS = new ThreadLocal<>();
+
+    private CacheTags() {}
+
+    /**
+     * 为当前正在加载的缓存条目或正在执行的清除添加标签，两者之外时忽略
+     * @param type 标签类型，如 dish、category
+     * @param id 实体id
+     * */
+    public static void tag(String type, Object id) {
+        Set<String> tags = TAGS.get();
+        if (tags != null && id != null) {
+            tags.add(type + ":" + id);
+        }
+    }
+
+    /**
+     * 开始收集标签
+     * @return 外层正在收集的标签，需要在结束时传给{@link #end(Set)}
+     * */
+    public static Set<String> begin() {
+        Set<String> outer = TAGS.get();
+        TAGS.set(new HashSet<>());
+        return outer;
+    }
+
+    /**
+     * 结束收集标签，并恢复外层的收集状态，内层的标签同样属于外层
+     * @param outer {@link #begin()}的返回值
+     * @return 本次收集到的标签
+     * */
+    public static Set<String> end(Set<String> outer) {
+        Set<String> tags = TAGS.get();
+        if (outer == null) {
+            TAGS.remove();
+        } else {
+            outer.addAll(tags);
+            TAGS.set(outer);
+        }
+        return tags;
+    }
+}
@@ -0,0 +1,157 @@
+package com.bei.common.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * 将返回值预先序列化为响应体，并在缓存命中时直接写入当前请求的响应
+ * 序列化使用spring mvc消息转换器中的ObjectMapper，保证与正常返回的响应体一致
+ * */
+@Component
+public class CachedResponseWriter {
+
+    @Autowired
+    private ObjectProvider<RequestMappingHandlerAdapter> handlerAdapter;
+
+    private volatile ObjectMapper objectMapper;
+
+    /**
+     * 将返回值序列化为UTF-8编码的JSON响应体
+     * */
+    public byte[] serialize(Object result) throws JsonProcessingException {
+        return objectMapper().writeValueAsBytes(result);
+    }
+
+    /**
+     * 检查当前请求的If-None-Match，与etag相同时返回304
+     * @param etag 本次调用的ETag
+     * @return 已返回304时为true
+     * */
+    public boolean notModified(String etag) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null || attributes.getResponse() == null) {
+            return false;
+        }
+        String ifNoneMatch = attributes.getRequest().getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals(gzipEtag(etag))) {
+                HttpServletResponse response = attributes.getResponse();
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                response.setHeader(HttpHeaders.ETAG, tag);
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 为当前请求的响应设置ETag，要求客户端每次使用前重新验证
+     * */
+    public void etag(String etag) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes != null && attributes.getResponse() != null) {
+            attributes.getResponse().setHeader(HttpHeaders.ETAG, etag);
+            attributes.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+    }
+
+    /**
+     * 将缓存的响应体写入当前请求的响应，客户端支持gzip时直接输出压缩后的数据
+     * @param etag 响应的ETag，为null时不设置
+     * @return 当前线程没有正在处理的请求时返回false
+     * */
+    public boolean write(CacheEntry entry, String etag) throws IOException {
+        return write(entry::getPlainBody, entry.isGzip() ? entry.getBody() : null, etag);
+    }
+
+    /**
+     * 将预先序列化的响应体写入当前请求的响应，客户端支持gzip时输出压缩后的数据
+     * @param body 原始响应体
+     * @param gzipBody 压缩后的响应体
+     * @param etag 响应的ETag，为null时不设置
+     * @return 当前线程没有正在处理的请求时返回false
+     * */
+    public boolean write(byte[] body, byte[] gzipBody, String etag) throws IOException {
+        return write(() -> body, gzipBody, etag);
+    }
+
+    /**
+     * @param body 原始响应体，只在客户端不支持gzip时获取，缓存条目只保存压缩后的数据时需要解压
+     * @param gzipBody 压缩后的响应体，为null时不压缩
+     * */
+    private boolean write(Supplier<byte[]> body, byte[] gzipBody, String etag) throws IOException {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if (attributes == null || attributes.getResponse() == null) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        HttpServletResponse response = attributes.getResponse();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = gzipBody != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] content = gzip ? gzipBody : body.get();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (gzipBody != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, gzip ? gzipEtag(etag) : etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        }
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+        response.flushBuffer();
+        return true;
+    }
+
+    /**
+     * 压缩后的响应体与原始响应体不同，使用不同的强ETag
+     * */
+    private String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    private ObjectMapper objectMapper() {
+        if (objectMapper == null) {
+            ObjectMapper mapper = null;
+            RequestMappingHandlerAdapter adapter = handlerAdapter.getIfAvailable();
+            if (adapter != null) {
+                for (HttpMessageConverter<?> converter : adapter.getMessageConverters()) {
+                    if (converter instanceof MappingJackson2HttpMessageConverter) {
+                        mapper = ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+                        break;
+                    }
+                }
+            }
+            objectMapper = mapper != null ? mapper : Jackson2ObjectMapperBuilder.json().build();
+        }
+        return objectMapper;
+    }
+}
@@ -0,0 +1,119 @@
+package com.bei.common.cache;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 默认的缓存key生成策略
+ * 将参数按固定格式写入MD5摘要，生成22位定长key，不依赖参数的toString和JSON序列化。
+ * 对象参数按属性名排序后逐个写入，每个类的属性读取方法只解析一次
+ * */
+@Component
+public class DefaultCacheKeyGenerator implements CacheKeyGenerator {
+
+    private static final int MAX_DEPTH = 4;
+
+    private static final byte NULL = 0;
+    private static final byte VALUE = 1;
+    private static final byte BEAN = 2;
+    private static final byte ITERABLE = 3;
+    private static final byte MAP = 4;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Map<Class<?>, Method[]> readers = new ConcurrentHashMap<>();
+
+    @Override
+    public String generate(Method method, Object[] args) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        for (Object arg : args) {
+            write(digest, arg, 0);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    private void write(MessageDigest digest, Object value, int depth) {
+        if (value == null || depth > MAX_DEPTH) {
+            digest.update(NULL);
+        } else if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum) {
+            digest.update(VALUE);
+            writeString(digest, value.toString());
+        } else if (value instanceof Date) {
+            digest.update(VALUE);
+            writeString(digest, String.valueOf(((Date) value).getTime()));
+        } else if (value instanceof Collection) {
+            digest.update(ITERABLE);
+            writeInt(digest, ((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                write(digest, element, depth + 1);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            digest.update(ITERABLE);
+            writeInt(digest, length);
+            for (int i = 0; i < length; i++) {
+                write(digest, Array.get(value, i), depth + 1);
+            }
+        } else if (value instanceof Map) {
+            digest.update(MAP);
+            writeInt(digest, ((Map<?, ?>) value).size());
+            ((Map<?, ?>) value).entrySet().stream()
+                    .sorted(Comparator.comparing(e -> String.valueOf(e.getKey())))
+                    .forEach(e -> {
+                        write(digest, e.getKey(), depth + 1);
+                        write(digest, e.getValue(), depth + 1);
+                    });
+        } else {
+            digest.update(BEAN);
+            writeString(digest, value.getClass().getName());
+            for (Method reader : readers.computeIfAbsent(value.getClass(), this::resolveReaders)) {
+                write(digest, ReflectionUtils.invokeMethod(reader, value), depth + 1);
+            }
+        }
+    }
+
+    private Method[] resolveReaders(Class<?> clazz) {
+        return Arrays.stream(BeanUtils.getPropertyDescriptors(clazz))
+                .filter(pd -> pd.getReadMethod() != null && !"class".equals(pd.getName()))
+                .sorted(Comparator.comparing(PropertyDescriptor::getName))
+                .map(PropertyDescriptor::getReadMethod)
+                .peek(ReflectionUtils::makeAccessible)
+                .toArray(Method[]::new);
+    }
+
+    private void writeString(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private void writeInt(MessageDigest digest, int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+}
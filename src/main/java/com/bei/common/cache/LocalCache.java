@@ -0,0 +1,107 @@
+package com.bei.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内一级缓存，位于redis之前
+ * 每个缓存名称对应一个有容量上限和过期时间的本地缓存，
+ * 各节点通过订阅redis频道同步失效
+ * */
+@Component
+@Slf4j
+public class LocalCache implements MessageListener {
+
+    /** 缓存失效广播频道，消息内容为需要失效的缓存名称前缀 */
+    public static final String INVALIDATE_CHANNEL = "cache:invalidate";
+
+    /** 按key清除缓存的广播频道，消息内容为换行分隔的缓存key */
+    public static final String EVICT_CHANNEL = "cache:evict";
+
+    @Value("${cache.local.maximum-size:1000}")
+    private long maximumSize;
+
+    @Value("${cache.local.expire:30000}")
+    private long expire;
+
+    private final ConcurrentMap<String, Cache<String, Object>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * 查询本地缓存
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @return 缓存的值，未命中时返回null
+     * */
+    public Object get(String name, String key) {
+        Cache<String, Object> cache = caches.get(name);
+        return cache == null ? null : cache.getIfPresent(key);
+    }
+
+    /**
+     * 写入本地缓存
+     * @param name 缓存名称
+     * @param key 缓存key
+     * @param value 缓存的值
+     * @param ttl 该缓存在redis中的过期时间(ms)，本地过期时间不会超过它
+     * */
+    public void put(String name, String key, Object value, long ttl) {
+        if (value == null) {
+            return;
+        }
+        caches.computeIfAbsent(name, n -> Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfterWrite(Math.min(expire, ttl), TimeUnit.MILLISECONDS)
+                        .build())
+                .put(key, value);
+    }
+
+    /**
+     * 清除本节点上名称以prefix开头的所有缓存
+     * @param prefix 缓存名称前缀
+     * */
+    public void invalidate(String prefix) {
+        caches.forEach((name, cache) -> {
+            if (name.startsWith(prefix)) {
+                cache.invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * 清除本节点上的指定缓存
+     * @param keys 缓存key
+     * */
+    public void invalidateKeys(Collection<String> keys) {
+        for (String key : keys) {
+            String name = CacheMetadata.nameOf(key);
+            Cache<String, Object> cache = name == null ? null : caches.get(name);
+            if (cache != null) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (EVICT_CHANNEL.equals(channel)) {
+            invalidateKeys(Arrays.asList(body.split("\n")));
+            return;
+        }
+        log.debug("收到缓存失效通知, {}", body);
+        invalidate(body);
+    }
+}
@@ -0,0 +1,103 @@
+package com.bei.common.cache;
+
+import com.bei.mapper.TableStatisticsMapper;
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 分页查询总数的缓存
+ * 同一个过滤条件翻页时只统计一次总数，缓存key中包含缓存名称的版本号，
+ * 通过@CleanCache(name = ...)清除，过期时间较短，用于兜底
+ * */
+@Component
+@Slf4j
+public class PageCountCache {
+
+    @Value("${cache.page-count.expire:60}")
+    private long expire;
+
+    @Value("${cache.page-count.estimate-expire:300}")
+    private long estimateExpire;
+
+    @Autowired
+    private CacheNamespace cacheNamespace;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private TableStatisticsMapper tableStatisticsMapper;
+
+    /**
+     * 分页查询，总数从缓存中获取，查询语句不再执行count，页码超出总数时不查询数据库
+     * @param name 缓存名称，清除时使用@CleanCache(name = name)
+     * @param filter 过滤条件，相同条件共享一个总数
+     * @param counter 缓存未命中时统计总数
+     * @param query 查询当前页的数据
+     * */
+    public <E> Page<E> page(String name, Object filter, int page, int pageSize,
+                            LongSupplier counter, Supplier<List<E>> query) {
+        long total = count(name, filter, counter);
+        if (pageSize > 0 && (long) (page - 1) * pageSize >= total) {
+            Page<E> empty = new Page<>(page, pageSize, false);
+            empty.setTotal(total);
+            return empty;
+        }
+        return page(total, page, pageSize, query);
+    }
+
+    /**
+     * 使用已知的总数分页查询，查询语句不再执行count
+     * @param total 总数，可以是估算值
+     * */
+    public <E> Page<E> page(long total, int page, int pageSize, Supplier<List<E>> query) {
+        Page<E> result = PageHelper.startPage(page, pageSize, false);
+        query.get();
+        result.setTotal(total);
+        return result;
+    }
+
+    /**
+     * 获取过滤条件对应的总数，未命中时统计并写入缓存
+     * */
+    public long count(String name, Object filter, LongSupplier counter) {
+        String key = name + ":v" + cacheNamespace.generation(name) + ":"
+                + DigestUtils.md5DigestAsHex(String.valueOf(filter).getBytes(StandardCharsets.UTF_8));
+        String value = redisTemplate.opsForValue().get(key);
+        if (value != null) {
+            return Long.parseLong(value);
+        }
+        long count = counter.getAsLong();
+        redisTemplate.opsForValue().set(key, String.valueOf(count), expire, TimeUnit.SECONDS);
+        return count;
+    }
+
+    /**
+     * 根据数据库的统计信息估算表的总行数，不扫描数据，InnoDB的误差可能达到40%
+     * 只适用于没有过滤条件且不需要精确总数的分页
+     * @param table 表名
+     * */
+    public long estimate(String table) {
+        String key = "estimate:" + table;
+        String value = redisTemplate.opsForValue().get(key);
+        if (value != null) {
+            return Long.parseLong(value);
+        }
+        Long rows = tableStatisticsMapper.estimateRows(table);
+        long count = rows == null ? 0 : rows;
+        redisTemplate.opsForValue().set(key, String.valueOf(count), estimateExpire, TimeUnit.SECONDS);
+        return count;
+    }
+}
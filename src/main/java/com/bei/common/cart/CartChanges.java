@@ -0,0 +1,38 @@
+package com.bei.common.cart;
+
+import com.bei.model.ShoppingCart;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一批购物车自上次写入数据库以来的变更
+ * */
+@Getter
+public class CartChanges {
+
+    /** 新增或数量变化的购物车项 */
+    private final List<ShoppingCart> saved = new ArrayList<>();
+
+    /** 已经移出购物车的项，用户id到菜品或套餐id */
+    private final Map<Long, List<Long>> removed = new LinkedHashMap<>();
+
+    /**
+     * 整个写入的购物车(第一次写入或记录变更之前写入过)，用户id到购物车中现有的菜品或套餐id，
+     * 数据库中该用户不在其中的项需要删除
+     * */
+    private final Map<Long, List<Long>> replaced = new LinkedHashMap<>();
+
+    /** 取出的变更记录，写入数据库失败时用于恢复，用户id到商品id */
+    private final Map<Long, List<String>> taken = new LinkedHashMap<>();
+
+    /**
+     * 变更的项数
+     * */
+    public int size() {
+        return saved.size() + removed.values().stream().mapToInt(List::size).sum();
+    }
+}
@@ -0,0 +1,161 @@
+package com.bei.common.cart;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * 购物车写入调度的分区租约
+ * 调度集合按用户id分为多个分区，每个节点定时在redis中登记心跳，
+ * 根据当前存活的节点用最高随机权重(rendezvous)哈希计算每个分区应该属于哪个节点，
+ * 节点持有并续约属于自己的分区的租约，释放不再属于自己的分区，
+ * 节点加入或退出后各节点在一个续约周期内重新分配，每个节点只写入自己持有的分区
+ * */
+@Component
+@Slf4j
+public class CartFlushPartitions {
+
+    /** 存活节点集合，分数为心跳过期时间(ms) */
+    private static final String NODES_KEY = "cart:flush:nodes";
+
+    private static final String LEASE_PREFIX = "cart:flush:lease:";
+
+    /**
+     * 获取或续约租约，租约空闲或已经属于本节点时设置过期时间
+     * KEYS[1]为租约key，ARGV[1]为节点id，ARGV[2]为过期时间(ms)
+     * 返回是否持有租约
+     * */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local owner = redis.call('GET', KEYS[1])\n" +
+            "if owner and owner ~= ARGV[1] then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])\n" +
+            "return 1", Long.class);
+
+    /**
+     * 释放属于本节点的租约
+     * KEYS[1]为租约key，ARGV[1]为节点id
+     * */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+            "  return redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return 0", Long.class);
+
+    /** 分区数量，所有节点必须相同，修改时需要先停止所有节点并清空调度集合 */
+    @Value("${cart.flush.partitions:16}")
+    private int partitions;
+
+    /** 租约和心跳的有效时间(ms)，节点异常退出后其分区最多经过这么久被其他节点接管 */
+    @Value("${cart.flush.lease-ttl:30000}")
+    private long leaseTtl;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    private final String nodeId = hostName() + ":" + UUID.randomUUID();
+
+    /** 本节点当前持有的分区 */
+    private volatile Set<Integer> owned = Collections.emptySet();
+
+    /**
+     * 用户所在的分区，用户id是雪花id，低位多为0，先用乘法散列打散
+     * */
+    public int partition(Long uid) {
+        return Math.floorMod((int) ((uid * 0x9E3779B97F4A7C15L) >>> 32), partitions);
+    }
+
+    /**
+     * 本节点当前持有的分区
+     * */
+    public Set<Integer> owned() {
+        return owned;
+    }
+
+    /**
+     * 登记心跳并按存活节点重新分配分区，续约周期应小于租约有效时间的一半
+     * */
+    @Scheduled(fixedDelayString = "${cart.flush.lease-renew-interval:10000}")
+    public void rebalance() {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now + leaseTtl);
+        redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, Double.NEGATIVE_INFINITY, now);
+        Set<String> nodes = redisTemplate.opsForZSet().range(NODES_KEY, 0, -1);
+        if (nodes == null || nodes.isEmpty()) {
+            return;
+        }
+        Set<Integer> held = new TreeSet<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            String lease = LEASE_PREFIX + partition;
+            if (nodeId.equals(preferredNode(nodes, partition))) {
+                Long acquired = redisTemplate.execute(ACQUIRE_SCRIPT, Collections.singletonList(lease),
+                        nodeId, String.valueOf(leaseTtl));
+                if (acquired != null && acquired == 1) {
+                    held.add(partition);
+                }
+            } else if (owned.contains(partition)) {
+                redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lease), nodeId);
+            }
+        }
+        if (!held.equals(owned)) {
+            log.info("购物车写入分区重新分配, 存活节点{}个, 本节点持有分区: {}", nodes.size(), held);
+        }
+        owned = Collections.unmodifiableSet(held);
+    }
+
+    /**
+     * 退出时释放所有租约并注销心跳，其他节点在下一个续约周期接管
+     * */
+    @PreDestroy
+    public void release() {
+        Set<Integer> held = owned;
+        owned = Collections.emptySet();
+        for (Integer partition : held) {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LEASE_PREFIX + partition), nodeId);
+        }
+        redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+    }
+
+    /**
+     * 分区应该属于的节点，每个节点对分区计算一个权重，取权重最大的节点，
+     * 节点变化时只有属于变化节点的分区会移动
+     * */
+    private String preferredNode(Set<String> nodes, int partition) {
+        String preferred = null;
+        long max = -1;
+        for (String node : nodes) {
+            CRC32 crc = new CRC32();
+            crc.update((node + "#" + partition).getBytes(StandardCharsets.UTF_8));
+            long weight = crc.getValue();
+            if (weight > max) {
+                max = weight;
+                preferred = node;
+            }
+        }
+        return preferred;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
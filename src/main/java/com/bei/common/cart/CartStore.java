@@ -0,0 +1,473 @@
+package com.bei.common.cart;
+
+import com.bei.common.codec.ValueCodec;
+import com.bei.model.ShoppingCart;
+import com.bei.utils.SnowflakeIdUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * redis中的购物车
+ * 每个用户的购物车对应两个哈希表，cart:{uid}保存每一项的菜品信息(名称、图片、金额、口味)，只在加入购物车时写入一次，
+ * 其中的数量不再使用；cart:{uid}:count保存每一项的数量，增减数量只是数量表中一个整数的原子递增，
+ * 不读写菜品信息，只有读取整个购物车(下单、写入数据库)时才解码菜品信息
+ * cart:{uid}:dirty记录上次写入数据库之后变化过的项，写入数据库时只写这些项，包括删除
+ * */
+@Component
+@Slf4j
+public class CartStore {
+
+    /**
+     * 等待写入数据库的购物车，分数为下一次写入的时间(s)
+     * 按用户id分区，每个分区的key为该前缀加分区号，不带分区号的集合是分区之前写入的调度
+     * */
+    public static final String SCHEDULE_KEY = "schedule:";
+
+    private static final String CART_PREFIX = "cart:";
+
+    private static final String COUNT_SUFFIX = ":count";
+
+    private static final String DIRTY_SUFFIX = ":dirty";
+
+    /**
+     * 变更记录中的标记，表示购物车写入过数据库且之后的变更都有记录，
+     * 没有标记的购物车(新的购物车或记录变更之前写入的购物车)需要整个写入一次
+     * */
+    private static final String TRACKED = "#";
+
+    /** 购物车写入数据库的周期(分钟)，第一次加入商品后也延迟这么久再写入 */
+    private static final int SCHEDULE_DELAY = 5;
+
+    /**
+     * 修改已在购物车中的商品的数量，只操作数量表，并记录变更和加入写入调度
+     * KEYS[1]为菜品信息表，KEYS[2]为数量表，KEYS[3]为变更记录，KEYS[4]为调度集合，
+     * ARGV[1]为商品id，ARGV[2]为增量，ARGV[3]为用户id，ARGV[4]为写入时间
+     * 返回新的数量，商品不在数量表中时返回-1
+     * */
+    private static final RedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then\n" +
+            "  return -1\n" +
+            "end\n" +
+            "redis.call('SADD', KEYS[3], ARGV[1])\n" +
+            "redis.call('ZADD', KEYS[4], 'NX', ARGV[4], ARGV[3])\n" +
+            "return redis.call('HINCRBY', KEYS[2], ARGV[1], ARGV[2])", Long.class);
+
+    /**
+     * 商品加入购物车，商品不在购物车中时写入菜品信息，并记录变更和加入写入调度
+     * KEYS[1]为菜品信息表，KEYS[2]为数量表，KEYS[3]为变更记录，KEYS[4]为调度集合，
+     * ARGV[1]为商品id，ARGV[2]为菜品信息，ARGV[3]为用户id，ARGV[4]为写入时间
+     * 返回新的数量，为-1表示旧数据还没有数量，需要先初始化
+     * */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HSETNX', KEYS[1], ARGV[1], ARGV[2]) == 0\n" +
+            "    and redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then\n" +
+            "  return -1\n" +
+            "end\n" +
+            "redis.call('SADD', KEYS[3], ARGV[1])\n" +
+            "redis.call('ZADD', KEYS[4], 'NX', ARGV[4], ARGV[3])\n" +
+            "return redis.call('HINCRBY', KEYS[2], ARGV[1], 1)", Long.class);
+
+    /**
+     * 数量减一，减到0时删除该项，并记录变更和加入写入调度
+     * KEYS[1]为菜品信息表，KEYS[2]为数量表，KEYS[3]为变更记录，KEYS[4]为调度集合，
+     * ARGV[1]为商品id，ARGV[2]为用户id，ARGV[3]为写入时间
+     * 返回新的数量，商品不在数量表中时返回-1
+     * */
+    private static final RedisScript<Long> SUB_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then\n" +
+            "  return -1\n" +
+            "end\n" +
+            "redis.call('SADD', KEYS[3], ARGV[1])\n" +
+            "redis.call('ZADD', KEYS[4], 'NX', ARGV[3], ARGV[2])\n" +
+            "local n = redis.call('HINCRBY', KEYS[2], ARGV[1], -1)\n" +
+            "if n <= 0 then\n" +
+            "  redis.call('HDEL', KEYS[1], ARGV[1])\n" +
+            "  redis.call('HDEL', KEYS[2], ARGV[1])\n" +
+            "  n = 0\n" +
+            "end\n" +
+            "return n", Long.class);
+
+    /**
+     * 清空购物车并移出写入调度，数据库中的购物车由调用方同时删除
+     * KEYS[1]为菜品信息表，KEYS[2]为数量表，KEYS[3]为变更记录，其余为调度集合，ARGV[1]为用户id
+     * 返回被删除的项数
+     * */
+    private static final RedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>(
+            "local n = redis.call('HLEN', KEYS[1])\n" +
+            "redis.call('DEL', KEYS[1], KEYS[2], KEYS[3])\n" +
+            "for i = 4, #KEYS do\n" +
+            "  redis.call('ZREM', KEYS[i], ARGV[1])\n" +
+            "end\n" +
+            "return n", Long.class);
+
+    /**
+     * 领取到期的购物车，领取的同时把下一次写入时间推迟，其他节点不会重复领取
+     * KEYS[1]为调度集合，ARGV[1]为当前时间，ARGV[2]为最多领取的数量，ARGV[3]为下一次写入时间
+     * 返回 {用户id, 到期时间, 用户id, 到期时间...}
+     * */
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'WITHSCORES', 'LIMIT', 0, ARGV[2])\n" +
+            "for i = 1, #due, 2 do\n" +
+            "  redis.call('ZADD', KEYS[1], ARGV[3], due[i])\n" +
+            "end\n" +
+            "return due", List.class);
+
+    /**
+     * 取出并清空多个购物车的变更记录，同时读取变化的项，
+     * 变更记录中没有标记时(新的购物车或记录变更之前写入的购物车)取出购物车中的所有项，
+     * 这样的购物车在redis中存在或有变更时需要整个写入，数据库中不在购物车里的项都要删除
+     * KEYS每三个一组，依次为菜品信息表、数量表、变更记录，ARGV[1]为开始记录变更的标记
+     * 返回每个购物车的 {商品id列表, 菜品信息列表, 数量列表, 是否整个写入}，已删除的项菜品信息为空
+     * */
+    private static final RedisScript<List> TAKE_CHANGES_SCRIPT = new DefaultRedisScript<>(
+            "local result = {}\n" +
+            "for i = 1, #KEYS, 3 do\n" +
+            "  local fields = redis.call('SMEMBERS', KEYS[i + 2])\n" +
+            "  local full = 0\n" +
+            "  if redis.call('SISMEMBER', KEYS[i + 2], ARGV[1]) == 0 then\n" +
+            "    if #fields > 0 or redis.call('EXISTS', KEYS[i]) == 1 then\n" +
+            "      full = 1\n" +
+            "    end\n" +
+            "    for _, field in ipairs(redis.call('HKEYS', KEYS[i])) do\n" +
+            "      table.insert(fields, field)\n" +
+            "    end\n" +
+            "  end\n" +
+            "  local changed, seen = {}, {}\n" +
+            "  for _, field in ipairs(fields) do\n" +
+            "    if field ~= ARGV[1] and not seen[field] then\n" +
+            "      seen[field] = true\n" +
+            "      table.insert(changed, field)\n" +
+            "    end\n" +
+            "  end\n" +
+            "  redis.call('DEL', KEYS[i + 2])\n" +
+            "  if redis.call('EXISTS', KEYS[i]) == 1 then\n" +
+            "    redis.call('SADD', KEYS[i + 2], ARGV[1])\n" +
+            "  end\n" +
+            "  if #changed == 0 then\n" +
+            "    table.insert(result, {{}, {}, {}, full})\n" +
+            "  else\n" +
+            "    table.insert(result, {changed, redis.call('HMGET', KEYS[i], unpack(changed)),\n" +
+            "        redis.call('HMGET', KEYS[i + 1], unpack(changed)), full})\n" +
+            "  end\n" +
+            "end\n" +
+            "return result", List.class);
+
+    /**
+     * 没有未写入的变更时移出写入调度，购物车在此期间又有变化时保留调度
+     * KEYS[1]为调度集合，其余为各用户的变更记录，ARGV[1]为开始记录变更的标记，其余为对应的用户id
+     * */
+    private static final RedisScript<Long> UNSCHEDULE_SCRIPT = new DefaultRedisScript<>(
+            "local removed = 0\n" +
+            "for i = 2, #KEYS do\n" +
+            "  if redis.call('SCARD', KEYS[i]) - redis.call('SISMEMBER', KEYS[i], ARGV[1]) == 0 then\n" +
+            "    removed = removed + redis.call('ZREM', KEYS[1], ARGV[i])\n" +
+            "  end\n" +
+            "end\n" +
+            "return removed", Long.class);
+
+    /** 购物车项写入数据库时使用的主键，在加入购物车时生成 */
+    private final SnowflakeIdUtils snowflakeIdUtils = new SnowflakeIdUtils(6, 1);
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Autowired
+    private ValueCodec valueCodec;
+
+    @Autowired
+    private CartFlushPartitions cartFlushPartitions;
+
+    /**
+     * 商品数量加一，商品已在购物车中时只递增数量，不需要编码菜品信息
+     * @param item 加入购物车的商品，商品不在购物车中时作为该项的菜品信息保存，id和用户id由服务端设置
+     * @return 加入后的数量
+     * */
+    public int add(Long uid, ShoppingCart item) {
+        String foodId = foodId(item);
+        long count = increment(uid, foodId);
+        if (count > 0) {
+            return (int) count;
+        }
+        // id是写入数据库时的主键，不能使用客户端传入的值，否则可以覆盖其他用户的购物车项
+        item.setId(snowflakeIdUtils.nextId());
+        item.setUserId(uid);
+        count = execute(ADD_SCRIPT, keys(uid, scheduleKey(uid)), bytes(foodId), valueCodec.encode(item),
+                bytes(String.valueOf(uid)), bytes(String.valueOf(scheduleTime(SCHEDULE_DELAY))));
+        if (count < 0 && initialize(uid, foodId)) {
+            count = increment(uid, foodId);
+        }
+        return (int) count;
+    }
+
+    /**
+     * 商品数量减一
+     * @return 减少后的数量，为0表示已经移出购物车，商品不在购物车中时返回null
+     * */
+    public Integer sub(Long uid, String foodId) {
+        List<String> keys = keys(uid, scheduleKey(uid));
+        byte[][] args = {bytes(foodId), bytes(String.valueOf(uid)), bytes(String.valueOf(scheduleTime(SCHEDULE_DELAY)))};
+        long count = execute(SUB_SCRIPT, keys, args);
+        if (count < 0 && initialize(uid, foodId)) {
+            count = execute(SUB_SCRIPT, keys, args);
+        }
+        return count < 0 ? null : (int) count;
+    }
+
+    /**
+     * 清空购物车
+     * @return 被删除的项数
+     * */
+    public long clear(Long uid) {
+        Long count = byteRedisTemplate.execute(CLEAR_SCRIPT, keys(uid, scheduleKey(uid), SCHEDULE_KEY),
+                bytes(String.valueOf(uid)));
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 购物车是否在redis中
+     * */
+    public boolean exists(Long uid) {
+        return Boolean.TRUE.equals(byteRedisTemplate.hasKey(cartKey(uid)));
+    }
+
+    /**
+     * 读取购物车中的所有项
+     * */
+    public List<ShoppingCart> getCart(Long uid) {
+        Map<String, byte[]> items = byteRedisTemplate.<String, byte[]>opsForHash().entries(cartKey(uid));
+        if (items.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return lines(items, redisTemplate.<String, String>opsForHash().entries(countKey(uid)));
+    }
+
+    /**
+     * 取出多个购物车自上次写入数据库以来的变更，取出后变更记录被清空，只需要一次往返
+     * 写入数据库失败时需要通过restoreChanges恢复
+     * */
+    @SuppressWarnings("unchecked")
+    public CartChanges takeChanges(Collection<Long> uids) {
+        CartChanges changes = new CartChanges();
+        if (uids.isEmpty()) {
+            return changes;
+        }
+        List<Long> uidList = new ArrayList<>(uids);
+        List<String> keys = new ArrayList<>(uidList.size() * 3);
+        uidList.forEach(uid -> keys.addAll(keys(uid)));
+        List<List<Object>> result = byteRedisTemplate.execute(TAKE_CHANGES_SCRIPT, keys, bytes(TRACKED));
+        if (result == null) {
+            return changes;
+        }
+        for (int i = 0; i < uidList.size(); i++) {
+            Long uid = uidList.get(i);
+            List<byte[]> fields = (List<byte[]>) result.get(i).get(0);
+            List<byte[]> items = (List<byte[]>) result.get(i).get(1);
+            List<byte[]> counts = (List<byte[]>) result.get(i).get(2);
+            boolean full = ((Number) result.get(i).get(3)).intValue() == 1;
+            if (full) {
+                changes.getReplaced().put(uid, new ArrayList<>());
+            }
+            for (int j = 0; j < fields.size(); j++) {
+                String foodId = new String(fields.get(j), StandardCharsets.UTF_8);
+                changes.getTaken().computeIfAbsent(uid, k -> new ArrayList<>()).add(foodId);
+                if (items.get(j) == null) {
+                    changes.getRemoved().computeIfAbsent(uid, k -> new ArrayList<>()).add(Long.valueOf(foodId));
+                    continue;
+                }
+                if (full) {
+                    changes.getReplaced().get(uid).add(Long.valueOf(foodId));
+                }
+                ShoppingCart line = valueCodec.decode(items.get(j), ShoppingCart.class);
+                if (counts.get(j) != null) {
+                    line.setNumber(Integer.valueOf(new String(counts.get(j), StandardCharsets.UTF_8)));
+                }
+                changes.getSaved().add(line);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * 写入数据库失败时恢复取出的变更记录，下一次写入时重试，
+     * 整个写入的购物车同时去掉标记，下一次仍然整个写入
+     * */
+    public void restoreChanges(CartChanges changes) {
+        changes.getTaken().forEach((uid, foodIds) ->
+                redisTemplate.opsForSet().add(dirtyKey(uid), foodIds.toArray(new String[0])));
+        changes.getReplaced().keySet().forEach(uid -> redisTemplate.opsForSet().remove(dirtyKey(uid), TRACKED));
+    }
+
+    /**
+     * 领取到期需要写入数据库的购物车，并把它们的下一次写入推迟到一个周期之后
+     * @param scheduleKey 调度集合
+     * @param limit 最多领取的数量
+     * @return 用户id到到期时间(s)的映射，按到期时间排序
+     * */
+    public Map<Long, Long> claim(String scheduleKey, int limit) {
+        List<byte[]> due = byteRedisTemplate.execute(CLAIM_SCRIPT, Collections.singletonList(scheduleKey),
+                bytes(String.valueOf(scheduleTime(0))), bytes(String.valueOf(limit)),
+                bytes(String.valueOf(scheduleTime(SCHEDULE_DELAY))));
+        Map<Long, Long> claimed = new LinkedHashMap<>();
+        if (due == null) {
+            return claimed;
+        }
+        for (int i = 0; i + 1 < due.size(); i += 2) {
+            claimed.put(Long.valueOf(new String(due.get(i), StandardCharsets.UTF_8)),
+                    (long) Double.parseDouble(new String(due.get(i + 1), StandardCharsets.UTF_8)));
+        }
+        return claimed;
+    }
+
+    /**
+     * 将没有未写入变更的购物车移出写入调度，购物车下一次变化时重新加入
+     * @param scheduleKey 领取这些购物车的调度集合
+     * */
+    public void unschedule(String scheduleKey, Collection<Long> uids) {
+        if (uids.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(uids.size() + 1);
+        List<byte[]> args = new ArrayList<>(uids.size() + 1);
+        keys.add(scheduleKey);
+        args.add(bytes(TRACKED));
+        for (Long uid : uids) {
+            keys.add(dirtyKey(uid));
+            args.add(bytes(String.valueOf(uid)));
+        }
+        byteRedisTemplate.execute(UNSCHEDULE_SCRIPT, keys, args.toArray());
+    }
+
+    /**
+     * 分区的调度集合
+     * */
+    public static String scheduleKey(int partition) {
+        return SCHEDULE_KEY + partition;
+    }
+
+    /**
+     * 调度集合中使用的时间(s)
+     * @param delay 距离现在的分钟数
+     * */
+    public static long scheduleTime(int delay) {
+        return LocalDateTime.now().plusMinutes(delay).toEpochSecond(ZoneOffset.ofHours(8));
+    }
+
+    /**
+     * 将数据库中的购物车写入redis
+     * */
+    public void load(Long uid, Collection<ShoppingCart> cart) {
+        if (cart.isEmpty()) {
+            return;
+        }
+        Map<String, byte[]> items = new HashMap<>(cart.size() * 2);
+        Map<String, String> counts = new HashMap<>(cart.size() * 2);
+        for (ShoppingCart line : cart) {
+            items.put(foodId(line), valueCodec.encode(line));
+            counts.put(foodId(line), String.valueOf(line.getNumber()));
+        }
+        redisTemplate.opsForHash().putAll(countKey(uid), counts);
+        byteRedisTemplate.opsForHash().putAll(cartKey(uid), items);
+        // 与数据库一致，没有需要写入的变更
+        redisTemplate.opsForSet().add(dirtyKey(uid), TRACKED);
+    }
+
+    /**
+     * 购物车项在哈希表中的key，菜品为菜品id，套餐为套餐id
+     * */
+    public static String foodId(ShoppingCart item) {
+        return String.valueOf(item.getDishId() != null ? item.getDishId() : item.getSetmealId());
+    }
+
+    /**
+     * 数量表出现之前写入的购物车项，数量保存在菜品信息中，第一次修改前先写入数量表
+     * @return 菜品信息是否存在，存在时需要重新执行脚本
+     * */
+    private boolean initialize(Long uid, String foodId) {
+        byte[] item = byteRedisTemplate.<String, byte[]>opsForHash().get(cartKey(uid), foodId);
+        if (item == null) {
+            return false;
+        }
+        ShoppingCart line = valueCodec.decode(item, ShoppingCart.class);
+        log.info("初始化用户：{} 购物车中 {} 的数量：{}", uid, foodId, line.getNumber());
+        redisTemplate.opsForHash().putIfAbsent(countKey(uid), foodId, String.valueOf(line.getNumber()));
+        return true;
+    }
+
+    /**
+     * 解码菜品信息并合并数量表中的数量
+     * */
+    private List<ShoppingCart> lines(Map<String, byte[]> items, Map<String, String> counts) {
+        List<ShoppingCart> cart = new ArrayList<>(items.size());
+        items.forEach((foodId, item) -> {
+            ShoppingCart line = valueCodec.decode(item, ShoppingCart.class);
+            String count = counts.get(foodId);
+            if (count != null) {
+                line.setNumber(Integer.valueOf(count));
+            }
+            cart.add(line);
+        });
+        return cart;
+    }
+
+    private long increment(Long uid, String foodId) {
+        Long count = redisTemplate.execute(INCREMENT_SCRIPT, keys(uid, scheduleKey(uid)),
+                foodId, "1", String.valueOf(uid), String.valueOf(scheduleTime(SCHEDULE_DELAY)));
+        return count == null ? -1 : count;
+    }
+
+    private long execute(RedisScript<Long> script, List<String> keys, byte[]... args) {
+        Long count = byteRedisTemplate.execute(script, keys, (Object[]) args);
+        return count == null ? -1 : count;
+    }
+
+    /**
+     * 用户购物车所在分区的调度集合
+     * */
+    private String scheduleKey(Long uid) {
+        return scheduleKey(cartFlushPartitions.partition(uid));
+    }
+
+    private List<String> keys(Long uid, String... others) {
+        List<String> keys = new ArrayList<>(3 + others.length);
+        keys.add(cartKey(uid));
+        keys.add(countKey(uid));
+        keys.add(dirtyKey(uid));
+        keys.addAll(Arrays.asList(others));
+        return keys;
+    }
+
+    private static String cartKey(Long uid) {
+        return CART_PREFIX + uid;
+    }
+
+    private static String countKey(Long uid) {
+        return CART_PREFIX + uid + COUNT_SUFFIX;
+    }
+
+    private static String dirtyKey(Long uid) {
+        return CART_PREFIX + uid + DIRTY_SUFFIX;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,639 @@
+package com.bei.common.codec;
+
+import com.alibaba.fastjson.JSON;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 紧凑的二进制编码，保留对象的类型
+ * 格式为 魔数(1字节) 版本(1字节) 值，每个值以1字节的类型标记开头，整数使用变长编码，
+ * 同一份数据中每个类只写一次类名和属性名，之后只写序号
+ * 首字节不是魔数的数据按迁移前的fastjson格式解析，新旧格式可以同时存在
+ * */
+@Component
+public class BinaryValueCodec implements ValueCodec {
+
+    /** 二进制格式的首字节，不会是合法JSON的开头 */
+    private static final byte MAGIC = (byte) 0xB1;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /** 最大嵌套层数，超过时认为存在循环引用 */
+    private static final int MAX_DEPTH = 32;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte FLOAT = 6;
+    private static final byte SHORT = 7;
+    private static final byte BYTE = 8;
+    private static final byte CHAR = 9;
+    private static final byte STRING = 10;
+    private static final byte DECIMAL = 11;
+    private static final byte BIG_INTEGER = 12;
+    private static final byte DATE = 13;
+    private static final byte LOCAL_DATE = 14;
+    private static final byte LOCAL_DATE_TIME = 15;
+    private static final byte BYTES = 16;
+    private static final byte LIST = 17;
+    private static final byte SET = 18;
+    private static final byte MAP = 19;
+    private static final byte ARRAY = 20;
+    private static final byte ENUM = 21;
+    private static final byte BEAN = 22;
+
+    /** 是否写入二进制格式，为false时写入fastjson格式，用于滚动升级期间兼容旧节点 */
+    @Value("${cache.codec.binary:true}")
+    private boolean binary;
+
+    /** 允许编解码的自定义类型所在的包 */
+    @Value("${cache.codec.allowed-packages:com.bei.,com.github.pagehelper.}")
+    private String[] allowedPackages;
+
+    private final Map<Class<?>, BeanType> beanTypes = new ConcurrentHashMap<>();
+
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+    public BinaryValueCodec() {
+    }
+
+    /**
+     * 在spring容器之外使用时指定配置
+     * */
+    public BinaryValueCodec(boolean binary, String... allowedPackages) {
+        this.binary = binary;
+        this.allowedPackages = allowedPackages;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        if (!binary) {
+            return JSON.toJSONBytes(value);
+        }
+        Output out = new Output(256);
+        out.writeByte(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        new Writer(out).write(value, 0);
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> type) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        if (data[0] != MAGIC) {
+            // 迁移前写入的fastjson数据
+            return JSON.parseObject(data, type);
+        }
+        if (data.length < 2 || data[1] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的编码版本");
+        }
+        Object value;
+        try {
+            value = new Reader(data).read(0);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("编码数据不完整", e);
+        }
+        if (value != null && !type.isInstance(value)) {
+            throw new IllegalArgumentException("编码数据的类型为" + value.getClass().getName() + "，期望" + type.getName());
+        }
+        return type.cast(value);
+    }
+
+    private BeanType beanType(Class<?> type) {
+        return beanTypes.computeIfAbsent(type, t -> {
+            checkAllowed(t.getName());
+            return new BeanType(t);
+        });
+    }
+
+    private Class<?> resolve(String name) {
+        return classes.computeIfAbsent(name, n -> {
+            // 基本类型和java.lang中的类只会作为数组元素类型和枚举类型使用
+            if (!n.startsWith("java.lang.") && ClassUtils.resolvePrimitiveClassName(n) == null) {
+                checkAllowed(n);
+            }
+            try {
+                return ClassUtils.forName(n, BinaryValueCodec.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("找不到编码数据中的类型: " + n, e);
+            }
+        });
+    }
+
+    private void checkAllowed(String name) {
+        for (String allowed : allowedPackages) {
+            if (name.startsWith(allowed)) {
+                return;
+            }
+        }
+        throw new IllegalArgumentException("不允许编解码的类型: " + name);
+    }
+
+    /**
+     * 可以通过getter和setter读写属性的类，属性按名称排序
+     * */
+    private static final class BeanType {
+
+        private final Class<?> type;
+
+        private final Constructor<?> constructor;
+
+        private final String[] names;
+
+        private final Method[] getters;
+
+        private final Method[] setters;
+
+        BeanType(Class<?> type) {
+            this.type = type;
+            try {
+                this.constructor = type.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+                PropertyDescriptor[] descriptors = Arrays.stream(Introspector.getBeanInfo(type, Object.class)
+                                .getPropertyDescriptors())
+                        .filter(d -> d.getReadMethod() != null && d.getWriteMethod() != null)
+                        .sorted(Comparator.comparing(PropertyDescriptor::getName))
+                        .toArray(PropertyDescriptor[]::new);
+                this.names = new String[descriptors.length];
+                this.getters = new Method[descriptors.length];
+                this.setters = new Method[descriptors.length];
+                for (int i = 0; i < descriptors.length; i++) {
+                    names[i] = descriptors[i].getName();
+                    getters[i] = descriptors[i].getReadMethod();
+                    setters[i] = descriptors[i].getWriteMethod();
+                }
+            } catch (NoSuchMethodException | IntrospectionException e) {
+                throw new IllegalArgumentException("无法编解码的类型: " + type.getName(), e);
+            }
+        }
+
+        int indexOf(String name) {
+            int index = Arrays.binarySearch(names, name);
+            return index < 0 ? -1 : index;
+        }
+
+        Object get(Object bean, int index) {
+            try {
+                return getters[index].invoke(bean);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalArgumentException("读取属性失败: " + type.getName() + "." + names[index], e);
+            }
+        }
+
+        void set(Object bean, int index, Object value) {
+            Method setter = setters[index];
+            if (value == null && setter.getParameterTypes()[0].isPrimitive()) {
+                return;
+            }
+            try {
+                setter.invoke(bean, value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalArgumentException("写入属性失败: " + type.getName() + "." + names[index], e);
+            }
+        }
+
+        Object newInstance() {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("无法创建对象: " + type.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * 单次编码的状态，记录已经写过的类
+     * */
+    private final class Writer {
+
+        private final Output out;
+
+        private final Map<Class<?>, Integer> beans = new HashMap<>();
+
+        private final Map<Class<?>, Integer> types = new HashMap<>();
+
+        Writer(Output out) {
+            this.out = out;
+        }
+
+        void write(Object value, int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("对象嵌套层数过多，可能存在循环引用");
+            }
+            if (value == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            Class<?> type = value.getClass();
+            if (type == String.class) {
+                out.writeByte(STRING);
+                out.writeString((String) value);
+            } else if (type == Integer.class) {
+                out.writeByte(INT);
+                out.writeVarLong(zigzag((Integer) value));
+            } else if (type == Long.class) {
+                out.writeByte(LONG);
+                out.writeVarLong(zigzag((Long) value));
+            } else if (type == Boolean.class) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (type == BigDecimal.class) {
+                BigDecimal decimal = (BigDecimal) value;
+                out.writeByte(DECIMAL);
+                out.writeVarLong(zigzag(decimal.scale()));
+                out.writeBytes(decimal.unscaledValue().toByteArray());
+            } else if (type == Double.class) {
+                out.writeByte(DOUBLE);
+                out.writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (type == Float.class) {
+                out.writeByte(FLOAT);
+                out.writeInt(Float.floatToRawIntBits((Float) value));
+            } else if (type == Short.class) {
+                out.writeByte(SHORT);
+                out.writeVarLong(zigzag((Short) value));
+            } else if (type == Byte.class) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (type == Character.class) {
+                out.writeByte(CHAR);
+                out.writeVarLong((Character) value);
+            } else if (type == BigInteger.class) {
+                out.writeByte(BIG_INTEGER);
+                out.writeBytes(((BigInteger) value).toByteArray());
+            } else if (value instanceof Date) {
+                out.writeByte(DATE);
+                out.writeVarLong(zigzag(((Date) value).getTime()));
+            } else if (type == LocalDate.class) {
+                out.writeByte(LOCAL_DATE);
+                out.writeVarLong(zigzag(((LocalDate) value).toEpochDay()));
+            } else if (type == LocalDateTime.class) {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                out.writeByte(LOCAL_DATE_TIME);
+                out.writeVarLong(zigzag(dateTime.toLocalDate().toEpochDay()));
+                out.writeVarLong(dateTime.toLocalTime().toNanoOfDay());
+            } else if (type == byte[].class) {
+                out.writeByte(BYTES);
+                out.writeBytes((byte[]) value);
+            } else if (value instanceof Enum) {
+                out.writeByte(ENUM);
+                writeType(((Enum<?>) value).getDeclaringClass());
+                out.writeString(((Enum<?>) value).name());
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                out.writeByte(value instanceof Set ? SET : LIST);
+                out.writeVarLong(collection.size());
+                for (Object element : collection) {
+                    write(element, depth + 1);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(entry.getKey(), depth + 1);
+                    write(entry.getValue(), depth + 1);
+                }
+            } else if (type.isArray()) {
+                int length = Array.getLength(value);
+                out.writeByte(ARRAY);
+                writeType(type.getComponentType());
+                out.writeVarLong(length);
+                for (int i = 0; i < length; i++) {
+                    write(Array.get(value, i), depth + 1);
+                }
+            } else {
+                writeBean(value, depth);
+            }
+        }
+
+        private void writeBean(Object value, int depth) {
+            BeanType beanType = beanType(value.getClass());
+            out.writeByte(BEAN);
+            Integer index = beans.get(beanType.type);
+            if (index == null) {
+                beans.put(beanType.type, beans.size());
+                out.writeVarLong(beans.size() - 1);
+                out.writeString(beanType.type.getName());
+                out.writeVarLong(beanType.names.length);
+                for (String name : beanType.names) {
+                    out.writeString(name);
+                }
+            } else {
+                out.writeVarLong(index);
+            }
+            for (int i = 0; i < beanType.names.length; i++) {
+                write(beanType.get(value, i), depth + 1);
+            }
+        }
+
+        private void writeType(Class<?> type) {
+            Integer index = types.get(type);
+            if (index == null) {
+                types.put(type, types.size());
+                out.writeVarLong(types.size() - 1);
+                out.writeString(type.getName());
+            } else {
+                out.writeVarLong(index);
+            }
+        }
+    }
+
+    /**
+     * 单次解码的状态，记录已经读到的类
+     * 数据中的属性按名称对应到本地类的属性，本地不存在的属性被忽略，兼容新旧版本的类
+     * */
+    private final class Reader {
+
+        private final Input in;
+
+        private final List<BeanType> beans = new ArrayList<>();
+
+        /** 数据中第i个属性对应的本地属性序号，本地不存在时为-1 */
+        private final List<int[]> properties = new ArrayList<>();
+
+        private final List<Class<?>> types = new ArrayList<>();
+
+        Reader(byte[] data) {
+            this.in = new Input(data, 2);
+        }
+
+        Object read(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("编码数据嵌套层数过多");
+            }
+            byte tag = in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    return (int) unzigzag(in.readVarLong());
+                case LONG:
+                    return unzigzag(in.readVarLong());
+                case DOUBLE:
+                    return Double.longBitsToDouble(in.readLong());
+                case FLOAT:
+                    return Float.intBitsToFloat(in.readInt());
+                case SHORT:
+                    return (short) unzigzag(in.readVarLong());
+                case BYTE:
+                    return in.readByte();
+                case CHAR:
+                    return (char) in.readVarLong();
+                case STRING:
+                    return in.readString();
+                case DECIMAL:
+                    int scale = (int) unzigzag(in.readVarLong());
+                    return new BigDecimal(new BigInteger(in.readBytes()), scale);
+                case BIG_INTEGER:
+                    return new BigInteger(in.readBytes());
+                case DATE:
+                    return new Date(unzigzag(in.readVarLong()));
+                case LOCAL_DATE:
+                    return LocalDate.ofEpochDay(unzigzag(in.readVarLong()));
+                case LOCAL_DATE_TIME:
+                    LocalDate date = LocalDate.ofEpochDay(unzigzag(in.readVarLong()));
+                    return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readVarLong()));
+                case BYTES:
+                    return in.readBytes();
+                case ENUM:
+                    return readEnum();
+                case LIST:
+                case SET:
+                    int size = in.readLength();
+                    Collection<Object> collection = tag == SET ? new LinkedHashSet<>(size * 4 / 3 + 1) : new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        collection.add(read(depth + 1));
+                    }
+                    return collection;
+                case MAP:
+                    int entries = in.readLength();
+                    Map<Object, Object> map = new LinkedHashMap<>(entries * 4 / 3 + 1);
+                    for (int i = 0; i < entries; i++) {
+                        map.put(read(depth + 1), read(depth + 1));
+                    }
+                    return map;
+                case ARRAY:
+                    Class<?> componentType = readType();
+                    int length = in.readLength();
+                    Object array = Array.newInstance(componentType, length);
+                    for (int i = 0; i < length; i++) {
+                        Array.set(array, i, read(depth + 1));
+                    }
+                    return array;
+                case BEAN:
+                    return readBean(depth);
+                default:
+                    throw new IllegalArgumentException("未知的类型标记: " + tag);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readEnum() {
+            Class type = readType();
+            return Enum.valueOf(type, in.readString());
+        }
+
+        private Object readBean(int depth) {
+            int index = (int) in.readVarLong();
+            if (index == beans.size()) {
+                BeanType beanType = beanType(resolve(in.readString()));
+                int[] mapping = new int[in.readLength()];
+                for (int i = 0; i < mapping.length; i++) {
+                    mapping[i] = beanType.indexOf(in.readString());
+                }
+                beans.add(beanType);
+                properties.add(mapping);
+            }
+            BeanType beanType = beans.get(index);
+            int[] mapping = properties.get(index);
+            Object bean = beanType.newInstance();
+            for (int property : mapping) {
+                Object value = read(depth + 1);
+                if (property >= 0) {
+                    beanType.set(bean, property, value);
+                }
+            }
+            return bean;
+        }
+
+        private Class<?> readType() {
+            int index = (int) in.readVarLong();
+            if (index == types.size()) {
+                types.add(resolve(in.readString()));
+            }
+            return types.get(index);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Output {
+
+        private byte[] buffer;
+
+        private int size;
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] data;
+
+        private int position;
+
+        Input(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return data[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("变长整数格式错误");
+        }
+
+        /**
+         * 读取长度，长度不会超过剩余的字节数
+         * */
+        int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalArgumentException("编码数据长度错误: " + length);
+            }
+            return (int) length;
+        }
+
+        int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = readLength();
+            byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = readLength();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.bei.common.codec;
+
+/**
+ * redis中保存的值的编解码策略
+ * */
+public interface ValueCodec {
+
+    /**
+     * 将对象编码为字节数组，编码结果中保留对象的类型
+     * @param value 要编码的对象，可以为null
+     * */
+    byte[] encode(Object value);
+
+    /**
+     * 将字节数组解码为对象
+     * @param data 编码后的数据
+     * @param type 期望的类型，数据中没有类型信息时按该类型解析
+     * */
+    <T> T decode(byte[] data, Class<T> type);
+}
@@ -0,0 +1,160 @@
+package com.bei.common.menu;
+
+import com.bei.dto.DishDto;
+import com.bei.model.Category;
+import com.bei.model.Setmeal;
+import com.bei.vo.MenuCategoryVo;
+import lombok.Getter;
+import org.springframework.util.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * 不可变的菜单快照，包含所有分类及其菜品和套餐
+ * 快照创建后不再修改，更新时创建新的快照整体替换，读取时不需要加锁，
+ * 返回的对象由所有请求共享，调用方不能修改
+ * */
+public final class MenuSnapshot {
+
+    public static final MenuSnapshot EMPTY = new MenuSnapshot(0, "", Collections.emptyList(), Collections.emptyMap(),
+            null, null);
+
+    /** 快照对应的菜单版本号，更新通知乱序时可能与内容不完全对应，只用于判断是否需要重新加载 */
+    @Getter
+    private final long version;
+
+    /** 所有分类、菜品和套餐(不区分售卖状态)的摘要，内容相同时各节点相同，用于生成ETag */
+    @Getter
+    private final String digest;
+
+    /** 所有分类，菜品分类在前，同类按sort排序 */
+    @Getter
+    private final List<Category> categories;
+
+    /** key为分类id，顺序与categories相同 */
+    @Getter
+    private final Map<Long, MenuCategoryVo> menus;
+
+    /** 完整菜单预先序列化的响应体，快照更新时生成一次 */
+    @Getter
+    private final byte[] body;
+
+    /** body压缩后的数据 */
+    @Getter
+    private final byte[] gzipBody;
+
+    /** body的摘要，创建快照时计算一次 */
+    private final String bodyDigest;
+
+    /** 菜品id到分类id的索引 */
+    private final Map<Long, Long> dishCategories = new HashMap<>();
+
+    /** 套餐id到分类id的索引 */
+    private final Map<Long, Long> setmealCategories = new HashMap<>();
+
+    public MenuSnapshot(long version, String digest, List<Category> categories, Map<Long, MenuCategoryVo> menus,
+                        byte[] body, byte[] gzipBody) {
+        this.version = version;
+        this.digest = digest;
+        this.categories = Collections.unmodifiableList(new ArrayList<>(categories));
+        this.menus = Collections.unmodifiableMap(new LinkedHashMap<>(menus));
+        this.body = body;
+        this.gzipBody = gzipBody;
+        this.bodyDigest = body == null ? "" : DigestUtils.md5DigestAsHex(body);
+        menus.forEach((categoryId, menu) -> {
+            menu.getDishes().forEach(dish -> dishCategories.put(dish.getId(), categoryId));
+            menu.getSetmeals().forEach(setmeal -> setmealCategories.put(setmeal.getId(), categoryId));
+        });
+    }
+
+    /**
+     * 获取指定类别的分类
+     * @param type 类别，为null时返回所有分类
+     * */
+    public List<Category> getCategories(Integer type) {
+        if (type == null) {
+            return categories;
+        }
+        return categories.stream()
+                .filter(category -> type.equals(category.getType()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取分类下的菜单
+     * @return 分类不存在时返回null
+     * */
+    public MenuCategoryVo getMenu(Long categoryId) {
+        return menus.get(categoryId);
+    }
+
+    /**
+     * 获取分类下指定售卖状态的菜品
+     * */
+    public List<DishDto> getDishes(Long categoryId, Integer status) {
+        MenuCategoryVo menu = menus.get(categoryId);
+        if (menu == null) {
+            return Collections.emptyList();
+        }
+        return menu.getDishes().stream()
+                .filter(dish -> Objects.equals(dish.getStatus(), status))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取套餐
+     * @param categoryId 分类id，为null时不限分类
+     * @param status 售卖状态，为null时不限状态
+     * */
+    public List<Setmeal> getSetmeals(Long categoryId, Integer status) {
+        List<MenuCategoryVo> selected = categoryId == null
+                ? new ArrayList<>(menus.values())
+                : menus.containsKey(categoryId) ? Collections.singletonList(menus.get(categoryId)) : Collections.emptyList();
+        return selected.stream()
+                .flatMap(menu -> menu.getSetmeals().stream())
+                .filter(setmeal -> status == null || status.equals(setmeal.getStatus()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查找菜品在快照中所属的分类
+     * @return 快照中没有该菜品时返回null
+     * */
+    public Long getDishCategory(Long dishId) {
+        return dishCategories.get(dishId);
+    }
+
+    /**
+     * 查找套餐在快照中所属的分类
+     * @return 快照中没有该套餐时返回null
+     * */
+    public Long getSetmealCategory(Long setmealId) {
+        return setmealCategories.get(setmealId);
+    }
+
+    /**
+     * 生成基于快照内容摘要的ETag，内容不变时同样参数的结果不变
+     * @param params 影响结果的请求参数
+     * */
+    public String etag(Object... params) {
+        StringBuilder etag = new StringBuilder("\"menu.").append(digest);
+        for (Object param : params) {
+            etag.append('.').append(param);
+        }
+        return etag.append('"').toString();
+    }
+
+    /**
+     * 生成完整菜单响应体的ETag，由响应体的摘要得到，响应体相同时各节点相同
+     * */
+    public String bodyEtag() {
+        return "\"menu.snapshot." + bodyDigest + "\"";
+    }
+}
@@ -0,0 +1,65 @@
+package com.bei.common.page;
+
+import com.bei.common.BusinessException;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页的结果，不统计总数，通过nextCursor获取下一页
+ * */
+@Data
+public class CursorPage<T> {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private List<T> list;
+
+    private int pageSize;
+
+    private boolean hasNext;
+
+    /** 下一页的游标，没有下一页时为null */
+    private String nextCursor;
+
+    /**
+     * 检查每页数据量，返回需要查询的数据量，多查询一条用于判断是否有下一页
+     * */
+    public static int queryLimit(int pageSize) {
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new BusinessException("每页数据量必须在1到" + MAX_PAGE_SIZE + "之间");
+        }
+        return pageSize + 1;
+    }
+
+    /**
+     * 根据多查询一条的结果生成分页
+     * @param rows 按游标顺序查询的pageSize + 1条数据
+     * @param cursor 获取数据对应的游标
+     * */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize, Function<T, PageCursor> cursor) {
+        CursorPage<T> page = new CursorPage<>();
+        page.pageSize = pageSize;
+        page.hasNext = rows.size() > pageSize;
+        page.list = page.hasNext ? new ArrayList<>(rows.subList(0, pageSize)) : rows;
+        if (page.hasNext) {
+            page.nextCursor = cursor.apply(page.list.get(pageSize - 1)).encode();
+        }
+        return page;
+    }
+
+    /**
+     * 转换当前页的数据，分页信息不变
+     * @param converter 整页转换，便于批量查询关联数据
+     * */
+    public <R> CursorPage<R> convert(Function<List<T>, List<R>> converter) {
+        CursorPage<R> page = new CursorPage<>();
+        page.pageSize = pageSize;
+        page.hasNext = hasNext;
+        page.nextCursor = nextCursor;
+        page.list = converter.apply(list);
+        return page;
+    }
+}
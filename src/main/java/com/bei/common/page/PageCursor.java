@@ -0,0 +1,69 @@
+package com.bei.common.page;
+
+import com.bei.common.BusinessException;
+import lombok.Getter;
+import org.apache.commons.lang.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 游标分页的位置，由排序字段和id组成，表示上一页最后一条数据
+ * 对客户端不透明，编码为16字节的base64url字符串
+ * */
+@Getter
+public class PageCursor {
+
+    /** 排序字段的值，时间字段为毫秒时间戳 */
+    private final long key;
+
+    private final long id;
+
+    public PageCursor(long key, long id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public static PageCursor of(Integer sort, Long id) {
+        return new PageCursor(sort == null ? 0 : sort, id);
+    }
+
+    public static PageCursor of(Date time, Long id) {
+        return new PageCursor(time == null ? 0 : time.getTime(), id);
+    }
+
+    public Integer getSort() {
+        return (int) key;
+    }
+
+    public Date getTime() {
+        return new Date(key);
+    }
+
+    public String encode() {
+        byte[] bytes = ByteBuffer.allocate(16).putLong(key).putLong(id).array();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * 解析客户端传回的游标
+     * @return 游标为空字符串时表示从第一页开始，返回null
+     * */
+    public static PageCursor decode(String token) {
+        if (StringUtils.isEmpty(token)) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException("分页游标无效");
+        }
+        if (bytes.length != 16) {
+            throw new BusinessException("分页游标无效");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new PageCursor(buffer.getLong(), buffer.getLong());
+    }
+}
@@ -0,0 +1,68 @@
+package com.bei.common.search;
+
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.dto.DishDto;
+import com.bei.model.Setmeal;
+import com.bei.vo.MenuCategoryVo;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 菜品和套餐的搜索索引，包含菜单快照中所有售卖状态的数据
+ * 随菜单快照一起更新，每次只替换重新加载的分类中的数据
+ * */
+@Component
+public class MenuSearchIndex {
+
+    private final NGramIndex<DishDto> dishes = new NGramIndex<>(DishDto::getId, DishDto::getName, DishDto::getCode);
+
+    private final NGramIndex<Setmeal> setmeals = new NGramIndex<>(Setmeal::getId, Setmeal::getName, Setmeal::getCode);
+
+    /** 第一次加载完成之前索引不可用，调用方需要回退到数据库查询 */
+    private volatile boolean ready;
+
+    /**
+     * 根据新旧快照更新索引
+     * @param previous 更新前的快照
+     * @param next 更新后的快照
+     * @param categoryIds 重新加载的分类，新快照中已不存在的分类会被整体移除
+     * */
+    public void update(MenuSnapshot previous, MenuSnapshot next, Collection<Long> categoryIds) {
+        previous.getMenus().forEach((categoryId, menu) -> {
+            if (categoryIds.contains(categoryId) || next.getMenu(categoryId) == null) {
+                menu.getDishes().forEach(dish -> dishes.remove(dish.getId()));
+                menu.getSetmeals().forEach(setmeal -> setmeals.remove(setmeal.getId()));
+            }
+        });
+        for (Long categoryId : categoryIds) {
+            MenuCategoryVo menu = next.getMenu(categoryId);
+            if (menu != null) {
+                menu.getDishes().forEach(dishes::put);
+                menu.getSetmeals().forEach(setmeals::put);
+            }
+        }
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按名称或编码搜索菜品，不区分售卖状态
+     * @return 按匹配程度排序的全部结果
+     * */
+    public List<DishDto> searchDishes(String keyword) {
+        return dishes.search(keyword);
+    }
+
+    /**
+     * 按名称或编码搜索套餐，不区分售卖状态
+     * @return 按匹配程度排序的全部结果
+     * */
+    public List<Setmeal> searchSetmeals(String keyword) {
+        return setmeals.search(keyword);
+    }
+}
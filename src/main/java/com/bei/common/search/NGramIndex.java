@@ -0,0 +1,201 @@
+package com.bei.common.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 内存中的n-gram倒排索引，按名称和编码做子串搜索
+ * 文本切分为单字和相邻的两个字，中文不需要分词，任意位置的子串都能命中。
+ * 查询时取关键字所有二元组倒排表的交集，再校验原文是否包含关键字，
+ * 结果按 名称完全匹配 > 名称前缀 > 名称包含 > 编码匹配 排序。
+ * 支持并发读写，单条数据的增删只修改它所在的倒排表
+ * */
+public class NGramIndex<T> {
+
+    private final Function<T, Long> idGetter;
+
+    private final Function<T, String> nameGetter;
+
+    private final Function<T, String> codeGetter;
+
+    private final Map<Long, T> documents = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    public NGramIndex(Function<T, Long> idGetter, Function<T, String> nameGetter, Function<T, String> codeGetter) {
+        this.idGetter = idGetter;
+        this.nameGetter = nameGetter;
+        this.codeGetter = codeGetter;
+    }
+
+    /**
+     * 添加或替换一条数据
+     * */
+    public void put(T document) {
+        Long id = idGetter.apply(document);
+        remove(id);
+        documents.put(id, document);
+        for (String gram : grams(document)) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    /**
+     * 删除一条数据，数据不存在时忽略
+     * */
+    public void remove(Long id) {
+        T document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+        for (String gram : grams(document)) {
+            postings.computeIfPresent(gram, (key, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * 搜索名称或编码包含关键字的数据
+     * @param keyword 关键字，忽略大小写和空白字符
+     * @return 按匹配程度排序的全部结果
+     * */
+    public List<T> search(String keyword) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : queryGrams(query)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        List<Match<T>> matches = new ArrayList<>();
+        for (Long id : lists.get(0)) {
+            if (!containsAll(lists, id)) {
+                continue;
+            }
+            T document = documents.get(id);
+            int rank = document == null ? -1 : rank(document, query);
+            if (rank >= 0) {
+                matches.add(new Match<>(document, rank, normalize(nameGetter.apply(document)).length(), id));
+            }
+        }
+        matches.sort(Comparator.<Match<T>>comparingInt(match -> match.rank)
+                .thenComparingInt(match -> match.length)
+                .thenComparingLong(match -> match.id));
+        List<T> result = new ArrayList<>(matches.size());
+        matches.forEach(match -> result.add(match.document));
+        return result;
+    }
+
+    private boolean containsAll(List<Set<Long>> lists, Long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 匹配程度，越小越靠前，不匹配时返回-1
+     * */
+    private int rank(T document, String query) {
+        String name = normalize(nameGetter.apply(document));
+        if (name.equals(query)) {
+            return 0;
+        }
+        if (name.startsWith(query)) {
+            return 1;
+        }
+        if (name.contains(query)) {
+            return 2;
+        }
+        String code = normalize(codeGetter.apply(document));
+        if (code.startsWith(query)) {
+            return 3;
+        }
+        return code.contains(query) ? 4 : -1;
+    }
+
+    private Set<String> grams(T document) {
+        Set<String> grams = new LinkedHashSet<>();
+        addGrams(grams, normalize(nameGetter.apply(document)));
+        addGrams(grams, normalize(codeGetter.apply(document)));
+        return grams;
+    }
+
+    private void addGrams(Set<String> grams, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 1 < text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+    }
+
+    /**
+     * 单字关键字使用单字倒排表，否则使用所有二元组
+     * */
+    private Set<String> queryGrams(String query) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (query.length() == 1) {
+            grams.add(query);
+            return grams;
+        }
+        for (int i = 0; i + 1 < query.length(); i++) {
+            grams.add(query.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Match<T> {
+
+        private final T document;
+
+        private final int rank;
+
+        private final int length;
+
+        private final long id;
+
+        private Match(T document, int rank, int length, long id) {
+            this.document = document;
+            this.rank = rank;
+            this.length = length;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.bei.component;
+
+import com.bei.common.cache.CacheMetadata;
+import com.bei.common.cache.CacheNamespace;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 后台清理旧版本的缓存数据
+ * 使用SCAN分批遍历，不会像KEYS一样阻塞redis
+ * */
+@Component
+@Slf4j
+public class CacheCleanTask {
+
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private CacheNamespace cacheNamespace;
+
+    @Scheduled(fixedDelayString = "${cache.clean.interval:600000}")
+    private void cleanStaleGenerations() {
+        for (Map.Entry<String, Long> entry : cacheNamespace.generations().entrySet()) {
+            String name = entry.getKey();
+            long generation = entry.getValue();
+            if (generation == 0) {
+                continue;
+            }
+            Long count = redisTemplate.execute((RedisCallback<Long>) connection -> clean(connection, name, generation));
+            if (count != null && count > 0) {
+                log.info("清除缓存：{} 的旧版本数据 {} 条", name, count);
+            }
+        }
+    }
+
+    /**
+     * 删除指定缓存名称下版本号小于generation的所有key
+     * */
+    private long clean(RedisConnection connection, String name, long generation) {
+        String prefix = name + ":v";
+        ScanOptions options = ScanOptions.scanOptions().match(prefix + "*").count(BATCH_SIZE).build();
+        List<byte[]> stale = new ArrayList<>();
+        long count = 0;
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            while (cursor.hasNext()) {
+                byte[] key = cursor.next();
+                if (isStale(new String(key, StandardCharsets.UTF_8), name, generation)) {
+                    stale.add(key);
+                }
+                if (stale.size() >= BATCH_SIZE) {
+                    count += unlink(connection, stale);
+                }
+            }
+        }
+        return count + unlink(connection, stale);
+    }
+
+    /**
+     * 名称以 本名称:v 开头的其他缓存(如dish和dish:view)的key也会被扫描到，只处理名称相同的key
+     * */
+    private boolean isStale(String key, String name, long generation) {
+        if (!name.equals(CacheMetadata.nameOf(key))) {
+            return false;
+        }
+        String prefix = name + ":v";
+        int end = key.indexOf(':', prefix.length());
+        if (end < 0) {
+            return false;
+        }
+        try {
+            return Long.parseLong(key.substring(prefix.length(), end)) < generation;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private long unlink(RedisConnection connection, List<byte[]> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Long count = connection.keyCommands().unlink(keys.toArray(new byte[0][]));
+        keys.clear();
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,53 @@
+package com.bei.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 记录当前线程最近一次游标查询使用的Statement，用于提前结束流式查询
+ * mysql驱动关闭未读完的流式结果集时会读完并丢弃剩余的行，
+ * 提前结束时需要先调用Statement.cancel()让数据库停止查询，再关闭游标
+ * */
+@Component
+@Slf4j
+@Intercepts(@Signature(type = StatementHandler.class, method = "queryCursor", args = Statement.class))
+public class CursorStatementInterceptor implements Interceptor {
+
+    private static final ThreadLocal<Statement> STATEMENT = new ThreadLocal<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        STATEMENT.set((Statement) invocation.getArgs()[0]);
+        return invocation.proceed();
+    }
+
+    /**
+     * 取消当前线程正在读取的游标查询，需要在关闭游标之前调用
+     * */
+    public static void cancel() {
+        Statement statement = STATEMENT.get();
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            log.warn("取消游标查询失败", e);
+        }
+    }
+
+    /**
+     * 游标使用完毕后清除当前线程记录的Statement
+     * */
+    public static void clear() {
+        STATEMENT.remove();
+    }
+}
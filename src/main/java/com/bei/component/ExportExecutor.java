@@ -0,0 +1,107 @@
+package com.bei.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 导出任务的并发限制和线程池
+ * 导出在单独的线程池中执行，不占用其他异步请求的线程，同时执行的导出达到上限时直接拒绝，
+ * 只有导出的响应使用较长的超时时间，其他异步请求不受影响
+ * */
+@Component
+@Slf4j
+public class ExportExecutor implements CallableProcessingInterceptor {
+
+    /** 请求中保存导出名额的属性，值为是否已经归还 */
+    private static final String PERMIT_ATTRIBUTE = ExportExecutor.class.getName() + ".PERMIT";
+
+    @Value("${export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    @Value("${export.timeout:600000}")
+    private long timeout;
+
+    private Semaphore permits;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setThreadNamePrefix("export-");
+        executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 获取一个导出名额，当前请求返回的响应体改为在导出线程池中执行
+     * 名额在响应体写完或异步请求结束(超时、客户端断开)时归还
+     * @return 包装后的响应体，同时执行的导出已达到上限时返回null
+     * */
+    public StreamingResponseBody submit(HttpServletRequest request, StreamingResponseBody body) {
+        if (!permits.tryAcquire()) {
+            log.info("同时执行的导出已达到上限{}, 拒绝导出: {}", maxConcurrent, request.getRequestURI());
+            return null;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        request.setAttribute(PERMIT_ATTRIBUTE, released);
+        WebAsyncUtils.getAsyncManager(request).setTaskExecutor(executor);
+        return out -> {
+            try {
+                body.writeTo(out);
+            } finally {
+                release(released);
+            }
+        };
+    }
+
+    /**
+     * 在开始异步处理之前设置导出响应的超时时间
+     * */
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        if (request instanceof AsyncWebRequest
+                && request.getAttribute(PERMIT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            ((AsyncWebRequest) request).setTimeout(timeout);
+        }
+    }
+
+    /**
+     * 响应体还没有开始执行就超时或出错时，任务被取消，在这里归还名额
+     * */
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        Object released = request.getAttribute(PERMIT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (released != null) {
+            release((AtomicBoolean) released);
+        }
+    }
+
+    private void release(AtomicBoolean released) {
+        if (released.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+}
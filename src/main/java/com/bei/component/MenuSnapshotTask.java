@@ -0,0 +1,37 @@
+package com.bei.component;
+
+import com.bei.service.MenuService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动时加载菜单快照，保证应用就绪之前顾客端的菜单已经在内存中
+ * 之后定时检查菜单版本号，快照还没有加载成功或最后一条更新通知丢失时全量重新加载，版本未变化时不重新加载，
+ * 中间的通知丢失或乱序在收到之后的通知时就会发现并全量加载，不依赖定时任务
+ * */
+@Component
+@Slf4j
+public class MenuSnapshotTask implements ApplicationRunner {
+
+    @Autowired
+    private MenuService menuService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            menuService.rebuild();
+        } catch (Exception e) {
+            log.warn("启动时加载菜单快照失败，将在访问时或定时任务中重新加载", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${menu.snapshot.refresh-interval:300000}",
+            fixedDelayString = "${menu.snapshot.refresh-interval:300000}")
+    private void refreshSnapshot() {
+        menuService.refreshIfStale();
+    }
+}
@@ -1,80 +1,142 @@
 package com.bei.component;
 
-import com.alibaba.fastjson.JSON;
-import com.bei.common.BusinessException;
-import com.bei.model.ShoppingCart;
+import com.bei.common.cart.CartChanges;
+import com.bei.common.cart.CartFlushPartitions;
+import com.bei.common.cart.CartStore;
 import com.bei.service.ShoppingCartService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.List;
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 将redis中的购物车写入数据库
+ * 只处理本节点持有租约的分区，每次按到期时间批量领取购物车，
+ * 一次取出这批购物车上次写入之后的变更，只把变化的项批量写入或删除，直到没有到期的购物车
+ * */
 @Component
 @Slf4j
 public class ScheduleTask {
 
+    /** 每批领取的购物车数量 */
+    @Value("${cart.flush.batch-size:500}")
+    private int batchSize;
+
+    @Autowired
+    private CartStore cartStore;
+
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private CartFlushPartitions cartFlushPartitions;
 
     @Autowired
     private ShoppingCartService shoppingCartService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer flushTimer;
+
+    private Counter flushedCarts;
+
+    private Counter flushedLines;
+
+    /** 最近一次写入时最早到期的购物车等待的时间(s) */
+    private final AtomicLong lag = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        flushTimer = Timer.builder("cart.flush").description("每批购物车写入数据库的耗时").register(meterRegistry);
+        flushedCarts = Counter.builder("cart.flush.carts").description("写入数据库的购物车数量").register(meterRegistry);
+        flushedLines = Counter.builder("cart.flush.lines").description("写入或删除的购物车项数量").register(meterRegistry);
+        Gauge.builder("cart.flush.lag", lag, AtomicLong::get)
+                .description("购物车到期后等待写入的时间(s)")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
     @Scheduled(cron = "0/5 * * ? * ?")
     private void flushShoppingCart() {
-        while(true) {
-            Set<ZSetOperations.TypedTuple<String>> set = redisTemplate.opsForZSet().rangeWithScores("schedule:", 0, 0);
-            ZoneOffset zoneOffset = ZoneOffset.ofHours(8);
-            if (set == null || set.size() == 0) return;
-            log.info("开始尝试将购物车信息写入磁盘");
-            ZSetOperations.TypedTuple<String> min = set.iterator().next();
-            Double time = min.getScore();
-            log.info(String.valueOf(time - LocalDateTime.now().toEpochSecond(zoneOffset)));
-            if (time - LocalDateTime.now().toEpochSecond(zoneOffset) > 0) {return;}
-
-            String uid = min.getValue();
-            log.info("将用户：{}的购物车数据写入磁盘", uid);
-            redisTemplate.opsForZSet().remove("schedule", uid);
-            String key = "cart:" + uid;
-            Set<Object> hashKeys = redisTemplate.opsForHash().keys(key);
-            List<Object> list = redisTemplate.opsForHash().multiGet(key, hashKeys);
-            List<ShoppingCart> shoppingCartList = list.stream()
-                    .map(o -> JSON.parseObject(String.valueOf(o), ShoppingCart.class))
-                    .collect(Collectors.toList());
-            for (ShoppingCart cart : shoppingCartList) {
-                int count = shoppingCartService.updateShoppingCart(cart);
-                if (count != 1) {
-                    count = shoppingCartService.addShoppingCart(cart);
-                    if (count != 1) {
-                        log.debug("购物车信息写入磁盘失败，param: {}", cart);
-                        throw new BusinessException("购物车信息写入失败");
-                    }
-                }
+        long start = System.currentTimeMillis();
+        double carts = flushedCarts.count();
+        double lines = flushedLines.count();
+        Set<Integer> partitions = cartFlushPartitions.owned();
+        long maxLag = 0;
+        for (Integer partition : partitions) {
+            maxLag = Math.max(maxLag, drain(CartStore.scheduleKey(partition)));
+        }
+        if (partitions.contains(0)) {
+            // 分区之前写入的调度由持有0号分区的节点处理
+            maxLag = Math.max(maxLag, drain(CartStore.SCHEDULE_KEY));
+        }
+        lag.set(maxLag);
+        if (flushedCarts.count() > carts) {
+            log.info("写入购物车{}个, 共{}项, 耗时{}ms, 最大延迟{}s", (long) (flushedCarts.count() - carts),
+                    (long) (flushedLines.count() - lines), System.currentTimeMillis() - start, maxLag);
+        }
+    }
+
+    /**
+     * 写入一个调度集合中所有到期的购物车
+     * @return 最早到期的购物车等待的时间(s)
+     * */
+    private long drain(String scheduleKey) {
+        long maxLag = 0;
+        while (true) {
+            Map<Long, Long> due = cartStore.claim(scheduleKey, batchSize);
+            if (due.isEmpty()) {
+                break;
+            }
+            maxLag = Math.max(maxLag, CartStore.scheduleTime(0) - Collections.min(due.values()));
+            try {
+                flush(scheduleKey, due);
+            } catch (RuntimeException e) {
+                // 领取时已经推迟了下一次写入，这批购物车会在一个周期后重试
+                log.error("购物车信息写入数据库失败，用户：{}", due.keySet(), e);
+                break;
+            }
+            if (due.size() < batchSize) {
+                break;
             }
-            addSchedule(uid, 5);
         }
+        return maxLag;
     }
+
     /**
-     * 添加更新购物车数据调度
-     * @param uid 用户id
-     * @param delay 延迟时长
+     * 只写入这批购物车上次写入之后变化的项，包括删除，没有新的变更的购物车移出调度
+     * 整个写入的购物车同时删除数据库中已经不在购物车里的项
      * */
-    private void addSchedule(String uid, int delay) {
-        if (delay <= 0) {
-            redisTemplate.opsForZSet().remove("schedule:", uid);
-            return;
+    private void flush(String scheduleKey, Map<Long, Long> due) {
+        long start = System.nanoTime();
+        CartChanges changes = cartStore.takeChanges(due.keySet());
+        try {
+            if (!changes.getSaved().isEmpty()) {
+                shoppingCartService.saveShoppingCarts(changes.getSaved());
+            }
+            if (!changes.getRemoved().isEmpty()) {
+                shoppingCartService.deleteShoppingCarts(changes.getRemoved());
+            }
+            if (!changes.getReplaced().isEmpty()) {
+                shoppingCartService.deleteShoppingCartsExcept(changes.getReplaced());
+            }
+        } catch (RuntimeException e) {
+            cartStore.restoreChanges(changes);
+            throw e;
         }
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime next = now.plusMinutes(delay);
-        ZoneOffset zoneOffset = ZoneOffset.ofHours(8);
-        log.info("用户：{} 购物车的下一次更新在 {}", uid, next);
-        redisTemplate.opsForZSet().add("schedule:", uid, next.toEpochSecond(zoneOffset));
+        cartStore.unschedule(scheduleKey, due.keySet());
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        flushedCarts.increment(due.size());
+        flushedLines.increment(changes.size());
     }
 }
@@ -0,0 +1,48 @@
+package com.bei.config;
+
+import com.bei.common.cache.CacheNamespace;
+import com.bei.common.cache.LocalCache;
+import com.bei.service.impl.MenuServiceImpl;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+@Configuration
+public class RedisConfig {
+
+    /**
+     * 值为字节数组的RedisTemplate，用于保存预先序列化的数据
+     * */
+    @Bean
+    public RedisTemplate<String, byte[]> byteRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    /**
+     * 订阅缓存失效和菜单更新频道，保证各节点的本地缓存和菜单快照一致
+     * */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       LocalCache localCache,
+                                                                       CacheNamespace cacheNamespace,
+                                                                       MenuServiceImpl menuService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(localCache, new ChannelTopic(LocalCache.INVALIDATE_CHANNEL));
+        container.addMessageListener(localCache, new ChannelTopic(LocalCache.EVICT_CHANNEL));
+        container.addMessageListener(cacheNamespace, new ChannelTopic(LocalCache.INVALIDATE_CHANNEL));
+        container.addMessageListener(cacheNamespace, new ChannelTopic(CacheNamespace.VERSION_CHANNEL));
+        container.addMessageListener(menuService, new ChannelTopic(MenuServiceImpl.REFRESH_CHANNEL));
+        return container;
+    }
+}
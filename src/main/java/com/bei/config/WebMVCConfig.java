@@ -1,12 +1,19 @@
 package com.bei.config;
 
+import com.bei.component.ExportExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 
 @Configuration
 public class WebMVCConfig extends WebMvcConfigurationSupport {
+
+    @Autowired
+    private ExportExecutor exportExecutor;
+
     /**
      * 添加静态资源映射
      * */
@@ -17,6 +24,13 @@ public class WebMVCConfig extends WebMvcConfigurationSupport {
         registry.addResourceHandler("/**").addResourceLocations("classpath:/static/");
     }
 
+    /**
+     * 导出的响应在单独的线程池中执行，并使用单独的超时时间
+     * */
+    @Override
+    protected void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(exportExecutor);
+    }
 
     @Override
     protected void addCorsMappings(CorsRegistry registry) {
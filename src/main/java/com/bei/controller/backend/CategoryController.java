@@ -3,11 +3,16 @@ package com.bei.controller.backend;
 import com.bei.annotation.Cache;
 import com.bei.annotation.CleanCache;
 import com.bei.common.CommonResult;
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.common.page.CursorPage;
+import com.bei.common.page.PageCursor;
 import com.bei.dto.param.CategoryParam;
 import com.bei.dto.param.PageParam;
 import com.bei.model.Category;
 import com.bei.service.CategoryService;
 import com.bei.service.DishService;
+import com.bei.service.MenuService;
 import com.bei.service.SetmealService;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
@@ -30,8 +35,14 @@ public class CategoryController {
     @Autowired
     private SetmealService setmealService;
 
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private CachedResponseWriter responseWriter;
+
     @PostMapping
-    @CleanCache(name = "category")
+    @CleanCache(name = CategoryService.PAGE_COUNT_CACHE, tags = "'categories'")
     public CommonResult addCategory(@RequestBody CategoryParam categoryParam) {
         int count = categoryService.addCategory(categoryParam.getName(), categoryParam.getType(), categoryParam.getSort());
         if (count == 1) {
@@ -43,15 +54,21 @@ public class CategoryController {
     }
 
     @GetMapping("/page")
-    @Cache(name = "categoryPage")
+    @Cache(name = "categoryPage", tags = "'categories'")
     public CommonResult getCategoryPage(PageParam pageParam) {
+        if (pageParam.getCursor() != null) {
+            List<Category> categoryList = categoryService.getCategoryPage(PageCursor.decode(pageParam.getCursor()),
+                    CursorPage.queryLimit(pageParam.getPageSize()));
+            return CommonResult.success(CursorPage.of(categoryList, pageParam.getPageSize(),
+                    category -> PageCursor.of(category.getSort(), category.getId())));
+        }
         List<Category> categoryList = categoryService.getCategoryPage(pageParam.getPage(), pageParam.getPageSize());
         PageInfo<Category> pageInfo = new PageInfo<>(categoryList);
         return CommonResult.success(pageInfo);
     }
 
     @DeleteMapping()
-    @CleanCache(name = "category")
+    @CleanCache(name = CategoryService.PAGE_COUNT_CACHE, tags = {"'categories'", "'category:' + #id"})
     public CommonResult deleteCategory(Long id) {
         long dishCount = dishService.getCountByCategory(id);
         long setmealCount = setmealService.getCountByCategory(id);
@@ -70,7 +87,7 @@ public class CategoryController {
     }
 
     @PutMapping("")
-    @CleanCache(name = "category")
+    @CleanCache(tags = {"'categories'", "'category:' + #categoryParam.id"})
     public CommonResult updateCategory(@RequestBody CategoryParam categoryParam) {
         int count = categoryService.updateCategory(categoryParam);
         if (count == 1) {
@@ -83,15 +100,13 @@ public class CategoryController {
     }
 
     @GetMapping("/list")
-    @Cache(name = "categoryList")
     public CommonResult listCategory(CategoryParam categoryParam) {
-        if (categoryParam.getType() == null) {
-            List<Category> list1 = categoryService.getCategoryByType(Category.DISH_CATEGORY);
-            List<Category> list2 = categoryService.getCategoryByType(Category.COMBO_CATEGORY);
-            list1.addAll(list2);
-            return CommonResult.success(list1);
+        MenuSnapshot snapshot = menuService.getSnapshot();
+        String etag = snapshot.etag("category", categoryParam.getType());
+        if (responseWriter.notModified(etag)) {
+            return null;
         }
-        List<Category> categoryList = categoryService.getCategoryByType(categoryParam.getType());
-        return CommonResult.success(categoryList);
+        responseWriter.etag(etag);
+        return CommonResult.success(snapshot.getCategories(categoryParam.getType()));
     }
 }
@@ -4,6 +4,11 @@ import com.bei.annotation.Cache;
 import com.bei.annotation.CleanCache;
 import com.bei.common.BusinessException;
 import com.bei.common.CommonResult;
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.common.page.CursorPage;
+import com.bei.common.page.PageCursor;
+import com.bei.common.cache.CacheTags;
 import com.bei.dto.DishDto;
 import com.bei.dto.param.PageParam;
 import com.bei.model.Category;
@@ -13,10 +18,12 @@ import com.bei.model.SetmealDish;
 import com.bei.service.CategoryService;
 import com.bei.service.DishFlavorService;
 import com.bei.service.DishService;
+import com.bei.service.MenuService;
 import com.bei.service.SetmealDishService;
 import com.bei.vo.DishVo;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,7 +32,7 @@ import org.springframework.web.bind.annotation.*;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -45,9 +52,15 @@ public class DishController {
     @Autowired
     private SetmealDishService setmealDishService;
 
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private CachedResponseWriter responseWriter;
+
     @PostMapping("")
     @Transactional
-    @CleanCache(name = "dish")
+    @CleanCache(name = DishService.PAGE_COUNT_CACHE, tags = {"'dishes'", "'dishes:' + #dishParam.categoryId"})
     public CommonResult addDish(@RequestBody DishDto dishParam) {
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishParam, dish);
@@ -57,23 +70,21 @@ public class DishController {
     }
 
     @GetMapping("/page")
-    @Cache(name = "dishPage")
+    @Cache(name = "dishPage", tags = "'dishes'", condition = "#pageParam.name == null || #pageParam.name.isEmpty()")
     public CommonResult getDishPage(PageParam pageParam) {
+        if (pageParam.getCursor() != null) {
+            if (StringUtils.isNotBlank(pageParam.getName())) {
+                throw new BusinessException("按名称搜索时不支持游标分页，请使用页码分页");
+            }
+            List<Dish> dishList = dishService.getDishPage(PageCursor.decode(pageParam.getCursor()),
+                    CursorPage.queryLimit(pageParam.getPageSize()));
+            CursorPage<Dish> page = CursorPage.of(dishList, pageParam.getPageSize(),
+                    dish -> PageCursor.of(dish.getSort(), dish.getId()));
+            return CommonResult.success(page.convert(this::toDishVos));
+        }
         List<Dish> dishList = dishService.getDishPage(pageParam.getPage(), pageParam.getPageSize(), pageParam.getName());
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy:MM:dd");
         PageInfo pageInfo = new PageInfo(dishList);
-        List list = (List) pageInfo.getList().stream()
-                .map(o -> {
-                    Dish dish = (Dish) o;
-                    DishVo dishVo = new DishVo();
-                    BeanUtils.copyProperties(dish, dishVo);
-                    Category category = categoryService.getCategoryById(dish.getCategoryId());
-                    dishVo.setUpdateTime(dateFormat.format(dish.getUpdateTime()));
-                    dishVo.setCategoryName(category.getName());
-                    return dishVo;
-                })
-                .collect(Collectors.toList());
-        pageInfo.setList(list);
+        pageInfo.setList(toDishVos(dishList));
         return CommonResult.success(pageInfo);
     }
 
@@ -92,8 +103,14 @@ public class DishController {
 
     @PutMapping
     @Transactional
-    @CleanCache(name = "dish")
+    @CleanCache(name = DishService.PAGE_COUNT_CACHE,
+            tags = {"'dishes'", "'dish:' + #dishDto.id", "'dishes:' + #dishDto.categoryId"})
     public CommonResult updateDish(@RequestBody DishDto dishDto) {
+        Dish original = dishService.getDishById(dishDto.getId());
+        if (original != null) {
+            // 修改分类时原分类下的缓存同样需要清除
+            CacheTags.tag("dishes", original.getCategoryId());
+        }
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDto, dish);
         int count = dishService.updateDish(dish);
@@ -107,32 +124,22 @@ public class DishController {
     }
 
     @GetMapping("/list")
-    @Cache(name = "dishList")
     public CommonResult getDishList(Dish dish) {
         if (dish.getCategoryId() == null) {
             return CommonResult.error("分类参数为空");
         }
-        List<Dish> dishList = dishService.getDishByCategory(dish.getCategoryId());
-        List<DishDto> dishDtos = dishList.stream()
-                .filter(dish1 -> {
-                    return Objects.equals(dish1.getStatus(), dish.getStatus());
-                })
-                .map(dish1 -> {
-                    DishDto dishDto = new DishDto();
-                    BeanUtils.copyProperties(dish1, dishDto);
-                    Category category = categoryService.getCategoryById(dish1.getCategoryId());
-                    dishDto.setCategoryName(category.getName());
-                    List<DishFlavor> flavors = dishFlavorService.getFlavorByDish(dish1.getId());
-                    dishDto.setFlavors(flavors);
-                    return dishDto;
-                })
-                .collect(Collectors.toList());
-        return CommonResult.success(dishDtos);
+        MenuSnapshot snapshot = menuService.getSnapshot();
+        String etag = snapshot.etag("dish", dish.getCategoryId(), dish.getStatus());
+        if (responseWriter.notModified(etag)) {
+            return null;
+        }
+        responseWriter.etag(etag);
+        return CommonResult.success(snapshot.getDishes(dish.getCategoryId(), dish.getStatus()));
     }
 
     @DeleteMapping
     @Transactional
-    @CleanCache(name = "dish")
+    @CleanCache(name = DishService.PAGE_COUNT_CACHE, tags = {"'dishes'", "#ids.split(',').!['dish:' + #this]"})
     public CommonResult deleteDish(String ids) {
         List<Long> list = convertIdsToList(ids);
         for (Long id : list) {
@@ -151,54 +158,23 @@ public class DishController {
             log.debug("删除 " + ids + " 失败，没有删除菜品口味关系表中的记录");
             throw new BusinessException("删除菜品失败");
         }
-        for (Long id : list) {
-            SetmealDish setmealDish = new SetmealDish();
-            setmealDish.setDishId(String.valueOf(id));
-            setmealDish.setIsDeleted(1);
-            setmealDishService.updateSetmeal(setmealDish);
-        }
+        SetmealDish setmealDish = new SetmealDish();
+        setmealDish.setIsDeleted(1);
+        setmealDishService.updateByDishes(list, setmealDish);
         return CommonResult.success("删除菜品成功");
     }
 
     @PostMapping("/status/0")
-    @CleanCache(name = "dish")
+    @CleanCache(tags = "#ids.split(',').!['dish:' + #this]")
     public CommonResult disableDish(String ids) {
-        List<Long> idList = convertIdsToList(ids);
-        for (Long id : idList) {
-            Dish dish = new Dish();
-            dish.setId(id);
-            dish.setStatus(0);
-            int count = dishService.updateDish(dish);
-            if (count != 1) {
-                log.debug("停售 " + id + " 失败，数据库没有找到操作对象");
-                throw new BusinessException("停售失败，请检查参数是否正确");
-            }
-            SetmealDish setmealDish = new SetmealDish();
-            setmealDish.setDishId(String.valueOf(id));
-            setmealDish.setIsDeleted(1);
-            setmealDishService.updateSetmeal(setmealDish);
-        }
+        dishService.updateDishStatus(convertIdsToList(ids), 0);
         return CommonResult.success("停售成功");
     }
 
     @PostMapping("/status/1")
-    @CleanCache(name = "dish")
+    @CleanCache(tags = "#ids.split(',').!['dish:' + #this]")
     public CommonResult enableDish(String ids) {
-        List<Long> idList = convertIdsToList(ids);
-        for (Long id : idList) {
-            Dish dish = new Dish();
-            dish.setId(id);
-            dish.setStatus(1);
-            int count = dishService.updateDish(dish);
-            if (count != 1) {
-                log.debug("启售 " + ids + " 失败，数据库没有找到操作对象");
-                throw new BusinessException("启售失败，请检查参数是否正确");
-            }
-            SetmealDish setmealDish = new SetmealDish();
-            setmealDish.setDishId(String.valueOf(id));
-            setmealDish.setIsDeleted(0);
-            setmealDishService.updateSetmeal(setmealDish);
-        }
+        dishService.updateDishStatus(convertIdsToList(ids), 1);
         return CommonResult.success("启售成功");
     }
 
@@ -209,4 +185,23 @@ public class DishController {
                 .collect(Collectors.toList());
         return list;
     }
+
+    private List<DishVo> toDishVos(List<Dish> dishList) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy:MM:dd");
+        Map<Long, Category> categories = categoryService.getCategoryByIds(dishList.stream()
+                .map(Dish::getCategoryId)
+                .collect(Collectors.toSet()));
+        return dishList.stream()
+                .map(dish -> {
+                    CacheTags.tag("dish", dish.getId());
+                    CacheTags.tag("category", dish.getCategoryId());
+                    DishVo dishVo = new DishVo();
+                    BeanUtils.copyProperties(dish, dishVo);
+                    Category category = categories.get(dish.getCategoryId());
+                    dishVo.setUpdateTime(dateFormat.format(dish.getUpdateTime()));
+                    dishVo.setCategoryName(category == null ? null : category.getName());
+                    return dishVo;
+                })
+                .collect(Collectors.toList());
+    }
 }
@@ -1,8 +1,12 @@
 package com.bei.controller.backend;
 
+import com.bei.annotation.CleanCache;
 import com.bei.common.CommonResult;
+import com.bei.common.page.CursorPage;
+import com.bei.common.page.PageCursor;
 import com.bei.dto.param.EmployeeParam;
 import com.bei.dto.param.LoginParam;
+import com.bei.dto.param.PageParam;
 import com.bei.dto.param.StatusParam;
 import com.bei.dto.AdminUserDetail;
 import com.bei.model.Employee;
@@ -46,6 +50,7 @@ public class EmployeeController {
 
     @PostMapping("")
     @PreAuthorize("hasAuthority('admin')")
+    @CleanCache(name = EmployeeService.PAGE_COUNT_CACHE)
     public CommonResult addEmployee(@RequestBody EmployeeParam employeeParam) {
         AdminUserDetail principal = (AdminUserDetail) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
         int count = employeeService.addEmployee(employeeParam, principal.getId());
@@ -60,8 +65,15 @@ public class EmployeeController {
     }
 
     @GetMapping("/page")
-    public CommonResult getEmployeePage(int page, int pageSize, String name) {
-        List<Employee> employeeList = employeeService.getEmployeePage(page, pageSize, name);
+    public CommonResult getEmployeePage(PageParam pageParam) {
+        if (pageParam.getCursor() != null) {
+            List<Employee> employeeList = employeeService.getEmployeePage(PageCursor.decode(pageParam.getCursor()),
+                    CursorPage.queryLimit(pageParam.getPageSize()), pageParam.getName());
+            return CommonResult.success(CursorPage.of(employeeList, pageParam.getPageSize(),
+                    employee -> PageCursor.of(employee.getUpdateTime(), employee.getId())));
+        }
+        List<Employee> employeeList = employeeService.getEmployeePage(pageParam.getPage(), pageParam.getPageSize(),
+                pageParam.getName());
         PageInfo<Employee> pageInfo = new PageInfo<>(employeeList);
         return CommonResult.success(pageInfo);
     }
@@ -92,6 +104,7 @@ public class EmployeeController {
 
     @PostMapping("/{id}")
     @PreAuthorize("hasAuthority('admin')")
+    @CleanCache(name = EmployeeService.PAGE_COUNT_CACHE)
     public CommonResult updateEmployeeInfo(@PathVariable Long id, @RequestBody EmployeeParam employeeParam) {
         int count = employeeService.updateEmployee(id, employeeParam);
         if (count == 1) {
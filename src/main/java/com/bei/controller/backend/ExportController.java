@@ -0,0 +1,72 @@
+package com.bei.controller.backend;
+
+import com.bei.component.ExportExecutor;
+import com.bei.service.ExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 导出CSV，数据在导出线程池中边查询边写入响应
+ * 同时执行的导出数量有上限，达到上限时返回429
+ * */
+@RestController
+@RequestMapping("/export")
+@Slf4j
+public class ExportController {
+
+    private static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private ExportExecutor exportExecutor;
+
+    @GetMapping("/dish")
+    public ResponseEntity<StreamingResponseBody> exportDishes(HttpServletRequest request) {
+        return csv(request, "菜品", exportService::exportDishes);
+    }
+
+    @GetMapping("/setmeal")
+    public ResponseEntity<StreamingResponseBody> exportSetmeals(HttpServletRequest request) {
+        return csv(request, "套餐", exportService::exportSetmeals);
+    }
+
+    @GetMapping("/order")
+    public ResponseEntity<StreamingResponseBody> exportOrders(HttpServletRequest request,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date beginTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date endTime) {
+        return csv(request, "订单", out -> exportService.exportOrders(beginTime, endTime, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> csv(HttpServletRequest request, String name, StreamingResponseBody body) {
+        StreamingResponseBody task = exportExecutor.submit(request, body);
+        if (task == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        String filename = name + "-" + new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()) + ".csv";
+        return ResponseEntity.ok()
+                .contentType(CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(filename, StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .body(task);
+    }
+}
@@ -0,0 +1,27 @@
+package com.bei.controller.backend;
+
+import com.bei.common.CommonResult;
+import com.bei.dto.param.OrderPageParam;
+import com.bei.model.Orders;
+import com.bei.service.OrderService;
+import com.github.pagehelper.PageInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/order")
+@Slf4j
+public class OrdersController {
+
+    @Autowired
+    private OrderService orderService;
+
+    @GetMapping("/page")
+    public CommonResult getOrderPage(OrderPageParam param) {
+        PageInfo<Orders> pageInfo = orderService.getOrderPage(param);
+        return CommonResult.success(pageInfo);
+    }
+}
@@ -4,16 +4,23 @@ import com.bei.annotation.Cache;
 import com.bei.annotation.CleanCache;
 import com.bei.common.BusinessException;
 import com.bei.common.CommonResult;
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.common.page.CursorPage;
+import com.bei.common.page.PageCursor;
+import com.bei.common.cache.CacheTags;
 import com.bei.dto.SetmealDto;
 import com.bei.dto.param.PageParam;
 import com.bei.model.Category;
 import com.bei.model.Setmeal;
 import com.bei.model.SetmealDish;
 import com.bei.service.CategoryService;
+import com.bei.service.MenuService;
 import com.bei.service.SetmealDishService;
 import com.bei.service.SetmealService;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -37,9 +45,15 @@ public class SetmealController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private CachedResponseWriter responseWriter;
+
     @PostMapping
     @Transactional
-    @CleanCache(name = "setmeal")
+    @CleanCache(name = SetmealService.PAGE_COUNT_CACHE, tags = {"'setmeals'", "'setmeals:' + #setmealDto.categoryId"})
     public CommonResult addSetmeal(@RequestBody SetmealDto setmealDto) {
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDto, setmeal);
@@ -56,28 +70,27 @@ public class SetmealController {
     }
 
     @GetMapping("/page")
-    @Cache(name = "setmealPage")
+    @Cache(name = "setmealPage", tags = "'setmeals'", condition = "#pageParam.name == null || #pageParam.name.isEmpty()")
     public CommonResult getSetmealPage(PageParam pageParam) {
+        if (pageParam.getCursor() != null) {
+            if (StringUtils.isNotBlank(pageParam.getName())) {
+                throw new BusinessException("按名称搜索时不支持游标分页，请使用页码分页");
+            }
+            List<Setmeal> setmealList = setmealService.getSetmealPage(PageCursor.decode(pageParam.getCursor()),
+                    CursorPage.queryLimit(pageParam.getPageSize()));
+            CursorPage<Setmeal> page = CursorPage.of(setmealList, pageParam.getPageSize(),
+                    setmeal -> PageCursor.of(setmeal.getCreateTime(), setmeal.getId()));
+            return CommonResult.success(page.convert(this::toSetmealDtos));
+        }
         List<Setmeal> setmealList = setmealService.getSetmealPage(pageParam);
         PageInfo pageInfo = new PageInfo(setmealList);
-        List list = pageInfo.getList();
-        list = (List) list.stream()
-                .map(o -> {
-                    Setmeal setmeal = (Setmeal) o;
-                    SetmealDto setmealDto = new SetmealDto();
-                    Category category = categoryService.getCategoryById(setmeal.getCategoryId());
-                    setmealDto.setCategoryName(category.getName());
-                    BeanUtils.copyProperties(setmeal, setmealDto);
-                    return setmealDto;
-                })
-                .collect(Collectors.toList());
-        pageInfo.setList(list);
+        pageInfo.setList(toSetmealDtos(setmealList));
         return CommonResult.success(pageInfo);
     }
 
     @DeleteMapping
     @Transactional
-    @CleanCache(name = "setmeal")
+    @CleanCache(name = SetmealService.PAGE_COUNT_CACHE, tags = {"'setmeals'", "#ids.split(',').!['setmeal:' + #this]"})
     public CommonResult deleteSetmeal(@RequestParam(name = "ids") String ids) {
         List<Long> idList = convertIdsToList(ids);
         for (Long id : idList) {
@@ -97,67 +110,48 @@ public class SetmealController {
     }
 
     @PostMapping("/status/0")
-    @CleanCache(name = "setmeal")
+    @CleanCache(tags = "#ids.split(',').!['setmeal:' + #this]")
     public CommonResult disableSetmeal(String ids) {
-        List<Long> idList = convertIdsToList(ids);
-        for (Long id : idList) {
-            Setmeal setmeal = new Setmeal();
-            setmeal.setId(id);
-            setmeal.setStatus(0);
-            int count = setmealService.updateSetmeal(setmeal);
-            if (count != 1) {
-                log.debug("停售 " + id + " 失败，数据库没有找到操作对象");
-                throw new BusinessException("停售失败，请检查参数是否正确");
-            }
-            SetmealDish setmealDish = new SetmealDish();
-            setmealDish.setSetmealId(String.valueOf(id));
-            setmealDish.setIsDeleted(1);
-            setmealDishService.updateSetmeal(setmealDish);
-        }
+        setmealService.updateSetmealStatus(convertIdsToList(ids), 0);
         return CommonResult.success("停售成功");
     }
 
     @PostMapping("/status/1")
-    @CleanCache(name = "setmeal")
+    @CleanCache(tags = "#ids.split(',').!['setmeal:' + #this]")
     public CommonResult enableSetmeal(String ids) {
-        List<Long> idList = convertIdsToList(ids);
-        for (Long id : idList) {
-            Setmeal setmeal = new Setmeal();
-            setmeal.setId(id);
-            setmeal.setStatus(1);
-            int count = setmealService.updateSetmeal(setmeal);
-            if (count != 1) {
-                log.debug("启售 " + id + " 失败，数据库没有找到操作对象");
-                throw new BusinessException("启售失败，请检查参数是否正确");
-            }
-        }
+        setmealService.updateSetmealStatus(convertIdsToList(ids), 1);
         return CommonResult.success("启售成功");
     }
 
     @GetMapping("/{id}")
+    @Cache(name = "setmealDetail", tags = "'setmeal:' + #id")
     public CommonResult getSetmealDetail(@PathVariable Long id) {
-        Setmeal setmeal = setmealService.getSetmeal(id);
-        List<SetmealDish> setmealDishList = setmealDishService.getSetmeal(id);
-        if (setmeal == null || setmealDishList == null || setmealDishList.size() == 0) {
+        SetmealDto setmealDto = setmealService.getSetmealDetail(id);
+        if (setmealDto == null || setmealDto.getSetmealDishes() == null || setmealDto.getSetmealDishes().isEmpty()) {
             log.debug("查询 " + id + " 信息失败");
             throw new BusinessException("查询套餐信息失败");
         }
-        SetmealDto setmealDto = new SetmealDto();
-        BeanUtils.copyProperties(setmeal, setmealDto);
-        setmealDto.setSetmealDishes(setmealDishList);
+        // 菜品的状态和价格、分类名称变化时都需要清除
+        CacheTags.tag("category", setmealDto.getCategoryId());
+        setmealDto.getSetmealDishes().forEach(setmealDish -> CacheTags.tag("dish", setmealDish.getDishId()));
         return CommonResult.success(setmealDto);
     }
 
     @GetMapping("/list")
-    @Cache(name = "setmealList")
     public CommonResult getSetmeal(Setmeal setmeal) {
-        List<Setmeal> setmealList = setmealService.getSetmeal(setmeal);
-        return CommonResult.success(setmealList);
+        MenuSnapshot snapshot = menuService.getSnapshot();
+        String etag = snapshot.etag("setmeal", setmeal.getCategoryId(), setmeal.getStatus());
+        if (responseWriter.notModified(etag)) {
+            return null;
+        }
+        responseWriter.etag(etag);
+        return CommonResult.success(snapshot.getSetmeals(setmeal.getCategoryId(), setmeal.getStatus()));
     }
 
     @PutMapping
     @Transactional
-    @CleanCache(name = "setmeal")
+    @CleanCache(name = SetmealService.PAGE_COUNT_CACHE,
+            tags = {"'setmeal:' + #setmealDto.id", "'setmeals:' + #setmealDto.categoryId"})
     public CommonResult updateSetmeal(@RequestBody SetmealDto setmealDto) {
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDto, setmeal);
@@ -182,4 +176,21 @@ public class SetmealController {
                 .collect(Collectors.toList());
         return list;
     }
+
+    private List<SetmealDto> toSetmealDtos(List<Setmeal> setmealList) {
+        Map<Long, Category> categories = categoryService.getCategoryByIds(setmealList.stream()
+                .map(Setmeal::getCategoryId)
+                .collect(Collectors.toSet()));
+        return setmealList.stream()
+                .map(setmeal -> {
+                    CacheTags.tag("setmeal", setmeal.getId());
+                    CacheTags.tag("category", setmeal.getCategoryId());
+                    SetmealDto setmealDto = new SetmealDto();
+                    Category category = categories.get(setmeal.getCategoryId());
+                    BeanUtils.copyProperties(setmeal, setmealDto);
+                    setmealDto.setCategoryName(category == null ? null : category.getName());
+                    return setmealDto;
+                })
+                .collect(Collectors.toList());
+    }
 }
@@ -0,0 +1,67 @@
+package com.bei.controller.front;
+
+import com.bei.common.CommonResult;
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.dto.DishDto;
+import com.bei.dto.param.PageParam;
+import com.bei.model.Setmeal;
+import com.bei.service.MenuService;
+import com.bei.utils.PageUtils;
+import com.github.pagehelper.PageInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/menu")
+@Slf4j
+public class MenuController {
+
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private CachedResponseWriter responseWriter;
+
+    /**
+     * 一次返回所有分类及其起售的菜品(含口味)和套餐
+     * 响应体在菜单更新时预先序列化并压缩，请求时直接输出，响应体未变化时返回304
+     * */
+    @GetMapping("/snapshot")
+    public void getSnapshot() throws IOException {
+        MenuSnapshot snapshot = menuService.getSnapshot();
+        String etag = snapshot.bodyEtag();
+        if (!responseWriter.notModified(etag)) {
+            responseWriter.write(snapshot.getBody(), snapshot.getGzipBody(), etag);
+        }
+    }
+
+    /**
+     * 按名称或编码搜索起售的菜品，结果按匹配程度排序
+     * */
+    @GetMapping("/search/dish")
+    public CommonResult searchDish(PageParam pageParam) {
+        List<DishDto> dishes = menuService.searchDishes(pageParam.getName()).stream()
+                .filter(dish -> Integer.valueOf(1).equals(dish.getStatus()))
+                .collect(Collectors.toList());
+        return CommonResult.success(new PageInfo<>(PageUtils.page(dishes, pageParam.getPage(), pageParam.getPageSize())));
+    }
+
+    /**
+     * 按名称或编码搜索起售的套餐，结果按匹配程度排序
+     * */
+    @GetMapping("/search/setmeal")
+    public CommonResult searchSetmeal(PageParam pageParam) {
+        List<Setmeal> setmeals = menuService.searchSetmeals(pageParam.getName()).stream()
+                .filter(setmeal -> Integer.valueOf(1).equals(setmeal.getStatus()))
+                .collect(Collectors.toList());
+        return CommonResult.success(new PageInfo<>(PageUtils.page(setmeals, pageParam.getPage(), pageParam.getPageSize())));
+    }
+}
@@ -1,8 +1,8 @@
 package com.bei.controller.front;
 
-import com.alibaba.fastjson.JSON;
 import com.bei.common.BusinessException;
 import com.bei.common.CommonResult;
+import com.bei.common.cart.CartStore;
 import com.bei.dto.AdminUserDetail;
 import com.bei.dto.param.PageParam;
 import com.bei.model.AddressBook;
@@ -16,14 +16,11 @@ import com.bei.service.UserService;
 import com.github.pagehelper.PageInfo;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/order")
@@ -43,7 +40,7 @@ public class OrderController {
     private OrderService orderService;
 
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private CartStore cartStore;
 
 //    @PostMapping("/submit")
 //    @Transactional
@@ -76,16 +73,11 @@ public class OrderController {
     @Transactional
     public CommonResult submitRedis(@RequestBody Orders orders) {
         AdminUserDetail principal = (AdminUserDetail) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        String key = "cart:" + principal.getId();
-        Set<Object> hashKeys = redisTemplate.opsForHash().keys(key);
-        List<Object> list = redisTemplate.opsForHash().multiGet(key, hashKeys);
-        if (list == null || list.size() == 0) {
+        List<ShoppingCart> shoppingCarts = cartStore.getCart(principal.getId());
+        if (shoppingCarts.isEmpty()) {
             log.debug("购物车为空，无法提交订单");
             throw new BusinessException("购物车不可为空");
         }
-        List<ShoppingCart> shoppingCarts = list.stream()
-                .map(o -> JSON.parseObject(String.valueOf(o), ShoppingCart.class))
-                .collect(Collectors.toList());
         if (orders.getAddressBookId() == null) {
             throw new BusinessException("用户地址不可为空");
         }
@@ -98,7 +90,7 @@ public class OrderController {
             throw new BusinessException("用户信息有误");
         }
         String orderId = orderService.submitOrder(orders, shoppingCarts, address, user);
-        redisTemplate.delete(key);
+        cartStore.clear(user.getId());
         shoppingCartService.deleteItemByUser(user.getId());
         return CommonResult.success(orderId);
     }
@@ -0,0 +1,19 @@
+package com.bei.dto;
+
+import com.bei.model.SetmealDish;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 套餐中的菜品，附带菜品当前的售卖状态和价格
+ * */
+@Data
+public class SetmealDishDto extends SetmealDish {
+
+    /** 菜品当前的售卖状态，菜品已删除时为null */
+    private Integer dishStatus;
+
+    /** 菜品当前的价格，price为加入套餐时的价格 */
+    private BigDecimal dishPrice;
+}
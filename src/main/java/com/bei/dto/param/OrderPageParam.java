@@ -0,0 +1,20 @@
+package com.bei.dto.param;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.util.Date;
+
+@Data
+public class OrderPageParam {
+    private int page;
+    private int pageSize;
+    /** 订单号 */
+    private String number;
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date beginTime;
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date endTime;
+    /** 没有过滤条件时使用表统计信息估算总数，不执行count */
+    private boolean estimate;
+}
@@ -7,4 +7,6 @@ public class PageParam {
     int page;
     int pageSize;
     String name;
+    /** 游标分页的位置，不为null时使用游标分页，空字符串表示第一页 */
+    String cursor;
 }
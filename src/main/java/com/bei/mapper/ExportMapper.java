@@ -0,0 +1,27 @@
+package com.bei.mapper;
+
+import com.bei.model.Dish;
+import com.bei.model.Orders;
+import com.bei.model.Setmeal;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+
+import java.util.Date;
+
+/**
+ * 导出用的流式查询，逐行读取结果，不在内存中保存整个结果集
+ * 游标只能在事务中使用，读取过程中占用数据库连接
+ * */
+public interface ExportMapper {
+
+    Cursor<Dish> selectDishes();
+
+    Cursor<Setmeal> selectSetmeals();
+
+    /**
+     * 按下单时间查询订单
+     * @param beginTime 开始时间，为null时不限
+     * @param endTime 结束时间，为null时不限
+     * */
+    Cursor<Orders> selectOrders(@Param("beginTime") Date beginTime, @Param("endTime") Date endTime);
+}
@@ -0,0 +1,17 @@
+package com.bei.mapper;
+
+import com.bei.dto.SetmealDto;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 套餐详情的关联查询
+ * */
+public interface SetmealDetailMapper {
+
+    /**
+     * 一次查询套餐、套餐中的菜品以及菜品当前的状态和价格
+     * @param id 套餐id
+     * @return 套餐不存在时返回null
+     * */
+    SetmealDto selectSetmealDetail(@Param("id") Long id);
+}
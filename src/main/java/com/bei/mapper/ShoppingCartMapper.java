@@ -27,4 +27,6 @@ public interface ShoppingCartMapper {
     int updateByPrimaryKeySelective(ShoppingCart row);
 
     int updateByPrimaryKey(ShoppingCart row);
+
+    int upsertBatch(@Param("shoppingCartList") List<ShoppingCart> shoppingCartList);
 }
\ No newline at end of file
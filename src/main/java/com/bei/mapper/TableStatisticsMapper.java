@@ -0,0 +1,16 @@
+package com.bei.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 读取数据库维护的表统计信息
+ * */
+public interface TableStatisticsMapper {
+
+    /**
+     * 当前库中指定表的估算行数
+     * @param table 表名
+     * @return 表不存在时返回null
+     * */
+    Long estimateRows(@Param("table") String table);
+}
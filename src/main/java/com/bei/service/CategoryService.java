@@ -1,11 +1,17 @@
 package com.bei.service;
 
+import com.bei.common.page.PageCursor;
 import com.bei.dto.param.CategoryParam;
 import com.bei.model.Category;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface CategoryService {
+
+    /** 分类分页总数的缓存名称，会改变总数的操作需要通过@CleanCache清除 */
+    String PAGE_COUNT_CACHE = "categoryPage.count";
     /**
      * 添加分类
      * @param name 分类名称 不可与数据库内已有记录重复
@@ -21,6 +27,13 @@ public interface CategoryService {
      * */
     List<Category> getCategoryPage(int page, int pageSize);
 
+    /**
+     * 游标分页查询分类，按sort和id排序，不统计总数
+     * @param after 上一页最后一条数据的位置，为null时查询第一页
+     * @param limit 最多返回的数据量
+     * */
+    List<Category> getCategoryPage(PageCursor after, int limit);
+
     /**
      * 删除分类, 如果分类下还有菜品，则禁止删除
      * @param id 要删除的分类的id
@@ -34,14 +47,27 @@ public interface CategoryService {
     int updateCategory(CategoryParam categoryParam);
 
     /**
-     * 查询指定类别的分类
+     * 查询指定类别的分类，从分类字典读取，按sort排序
      * @param type 类别
      * */
     List<Category> getCategoryByType(Integer type);
 
     /**
-     * 根据id查找分类
+     * 根据id查找分类，从分类字典读取
      * @param cid 分类id
      * */
     Category getCategoryById(Long cid);
+
+    /**
+     * 根据id批量查找分类，从分类字典读取，不访问数据库
+     * @param cids 分类id
+     * @return key为分类id，不存在的分类没有对应的项
+     * */
+    Map<Long, Category> getCategoryByIds(Collection<Long> cids);
+
+    /**
+     * 从数据库重新加载分类字典并整体替换
+     * 本节点修改分类后在事务提交时自动调用，其他节点在重新加载菜单快照时调用
+     * */
+    void reloadCategories();
 }
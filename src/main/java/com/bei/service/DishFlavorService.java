@@ -2,7 +2,9 @@ package com.bei.service;
 
 import com.bei.model.DishFlavor;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface DishFlavorService {
 
@@ -24,6 +26,13 @@ public interface DishFlavorService {
      * */
     List<DishFlavor> getFlavorByDish(Long id);
 
+    /**
+     * 根据菜品id批量查询口味信息，只执行一次查询
+     * @param ids 菜品id
+     * @return key为菜品id，没有口味的菜品没有对应的项
+     * */
+    Map<Long, List<DishFlavor>> getFlavorByDishes(Collection<Long> ids);
+
     /**
      * 根据dishId删除对应的口味信息
      * */
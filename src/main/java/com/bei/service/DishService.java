@@ -1,18 +1,29 @@
 package com.bei.service;
 
+import com.bei.common.page.PageCursor;
 import com.bei.model.Dish;
 import com.bei.vo.DishVo;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DishService {
 
+    /** 菜品分页总数的缓存名称，会改变总数的操作需要通过@CleanCache清除 */
+    String PAGE_COUNT_CACHE = "dishPage.count";
+
     /** 
      * 获取指定分类的菜品列表
      * @param id 分类id
      * */
     List<Dish> getDishByCategory(Long id);
 
+    /**
+     * 获取多个分类的菜品列表，只执行一次查询
+     * @param ids 分类id
+     * */
+    List<Dish> getDishByCategories(Collection<Long> ids);
+
     /**
      * 查询指定分类的菜品数量
      * */
@@ -28,22 +39,44 @@ public interface DishService {
      * 分页查询Dish
      * @param page 页码
      * @param pageSize 每页数据量
-     * @param name 需要匹配的名称
+     * @param name 搜索关键字，通过搜索索引匹配名称或编码，结果按匹配程度排序
      * */
     List<Dish> getDishPage(int page, int pageSize, String name);
 
+    /**
+     * 游标分页查询Dish，按sort和id排序，不统计总数
+     * 按名称搜索的结果按匹配程度排序，只能使用页码分页
+     * @param after 上一页最后一条数据的位置，为null时查询第一页
+     * @param limit 最多返回的数据量
+     * */
+    List<Dish> getDishPage(PageCursor after, int limit);
+
     /**
      * 根据id获取dish
      * @param id 菜品id
      * */
     Dish getDishById(Long id);
 
+    /**
+     * 按id批量查询菜品，只执行一次查询，结果顺序与ids相同，已删除的菜品被忽略
+     * @param ids 菜品id
+     * */
+    List<Dish> getDishByIds(List<Long> ids);
+
     /**
      * 更新dish信息
      * @param dish dish的新信息，其中必须包含主键
      * */
     int updateDish(Dish dish);
 
+    /**
+     * 批量修改菜品的售卖状态，并同步套餐菜品关系中这些菜品的删除标记，
+     * 在同一个事务中执行两条update，有菜品不存在时整体回滚
+     * @param ids 菜品id
+     * @param status 新的状态，0停售，1启售
+     * */
+    int updateDishStatus(Collection<Long> ids, int status);
+
     /**
      * 批量删除菜品
      * */
@@ -1,11 +1,15 @@
 package com.bei.service;
 
+import com.bei.common.page.PageCursor;
 import com.bei.dto.param.EmployeeParam;
 import com.bei.model.Employee;
 
 import java.util.List;
 
 public interface EmployeeService {
+
+    /** 员工分页总数的缓存名称，会改变总数的操作需要通过@CleanCache清除 */
+    String PAGE_COUNT_CACHE = "employeePage.count";
     /**
      * 根据用户名获取员工
      * @param username 用户名
@@ -28,6 +32,14 @@ public interface EmployeeService {
 
     List<Employee> getEmployeePage(int page, int pageSize, String name);
 
+    /**
+     * 游标分页查询员工，按更新时间和id倒序排列，不统计总数
+     * @param after 上一页最后一条数据的位置，为null时查询第一页
+     * @param limit 最多返回的数据量
+     * @param name 需要匹配的用户名
+     * */
+    List<Employee> getEmployeePage(PageCursor after, int limit, String name);
+
     int updateEmployeeStatus(Long id, Integer status);
 
     Employee getEmployeeById(Long id);
@@ -0,0 +1,28 @@
+package com.bei.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+public interface ExportService {
+
+    /**
+     * 导出所有菜品为CSV
+     * @param out 输出流，客户端断开时写入失败，导出随之停止
+     * */
+    void exportDishes(OutputStream out) throws IOException;
+
+    /**
+     * 导出所有套餐为CSV
+     * @param out 输出流，客户端断开时写入失败，导出随之停止
+     * */
+    void exportSetmeals(OutputStream out) throws IOException;
+
+    /**
+     * 按下单时间导出订单为CSV
+     * @param beginTime 开始时间，为null时不限
+     * @param endTime 结束时间，为null时不限
+     * @param out 输出流，客户端断开时写入失败，导出随之停止
+     * */
+    void exportOrders(Date beginTime, Date endTime, OutputStream out) throws IOException;
+}
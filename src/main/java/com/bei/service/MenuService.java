@@ -0,0 +1,45 @@
+package com.bei.service;
+
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.dto.DishDto;
+import com.bei.model.Setmeal;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MenuService {
+
+    /**
+     * 获取当前的菜单快照，快照加载之后不再访问数据库
+     * 还没有加载成功时按间隔重试，加载失败时返回空快照，不抛出异常
+     * */
+    MenuSnapshot getSnapshot();
+
+    /**
+     * 从数据库重新加载完整的菜单快照
+     * */
+    void rebuild();
+
+    /**
+     * 按名称或编码搜索菜品，包含所有售卖状态
+     * @return 按匹配程度排序的全部结果
+     * */
+    List<DishDto> searchDishes(String keyword);
+
+    /**
+     * 按名称或编码搜索套餐，包含所有售卖状态
+     * @return 按匹配程度排序的全部结果
+     * */
+    List<Setmeal> searchSetmeals(String keyword);
+
+    /**
+     * 快照还没有加载或菜单版本号比当前快照新时重新加载，用于补偿启动时的加载失败和漏收的更新通知
+     * */
+    void refreshIfStale();
+
+    /**
+     * 通知所有节点重新加载指定分类，当前事务提交之后才会发出通知
+     * @param categoryIds 数据发生变化的分类id，为空时只重新加载分类列表
+     * */
+    void refresh(Collection<Long> categoryIds);
+}
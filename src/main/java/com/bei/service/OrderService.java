@@ -1,5 +1,6 @@
 package com.bei.service;
 
+import com.bei.dto.param.OrderPageParam;
 import com.bei.model.AddressBook;
 import com.bei.model.Orders;
 import com.bei.model.ShoppingCart;
@@ -10,6 +11,10 @@ import com.github.pagehelper.PageInfo;
 import java.util.List;
 
 public interface OrderService {
+
+    /** 订单分页总数的缓存名称，下单时不清除，依靠过期时间更新 */
+    String PAGE_COUNT_CACHE = "orderPage.count";
+
     /**
      * 提交订单
      *
@@ -25,4 +30,10 @@ public interface OrderService {
      * 分页获取订单详细信息
      * */
     PageInfo getUserOrderDetails(Long uid, int page, int pageSize);
+
+    /**
+     * 后台分页查询订单，按下单时间倒序排列
+     * @param param 过滤条件，没有过滤条件且estimate为true时总数为估算值
+     * */
+    PageInfo<Orders> getOrderPage(OrderPageParam param);
 }
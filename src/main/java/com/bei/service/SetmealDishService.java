@@ -2,6 +2,7 @@ package com.bei.service;
 
 import com.bei.model.SetmealDish;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface SetmealDishService {
@@ -26,4 +27,18 @@ public interface SetmealDishService {
      * */
     void updateSetmeal(SetmealDish setmealDish);
 
+    /**
+     * 批量更新指定菜品对应的菜品套餐关系，只执行一条update
+     * @param dishIds 菜品id
+     * @param setmealDish 需要更新的字段
+     * */
+    int updateByDishes(Collection<Long> dishIds, SetmealDish setmealDish);
+
+    /**
+     * 批量更新指定套餐对应的菜品套餐关系，只执行一条update
+     * @param setmealIds 套餐id
+     * @param setmealDish 需要更新的字段
+     * */
+    int updateBySetmeals(Collection<Long> setmealIds, SetmealDish setmealDish);
+
 }
@@ -1,11 +1,17 @@
 package com.bei.service;
 
+import com.bei.common.page.PageCursor;
+import com.bei.dto.SetmealDto;
 import com.bei.dto.param.PageParam;
 import com.bei.model.Setmeal;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface SetmealService {
+
+    /** 套餐分页总数的缓存名称，会改变总数的操作需要通过@CleanCache清除 */
+    String PAGE_COUNT_CACHE = "setmealPage.count";
     /**
      * 获取指定分类的套餐数量
      *
@@ -21,10 +27,18 @@ public interface SetmealService {
     Long addSetmeal(Setmeal setmeal);
 
     /**
-     * 获取套餐分页
+     * 获取套餐分页，name不为空时通过搜索索引匹配名称或编码，结果按匹配程度排序
      * */
     List<Setmeal> getSetmealPage(PageParam pageParam);
 
+    /**
+     * 游标分页查询套餐，按创建时间和id倒序排列，不统计总数
+     * 按名称搜索的结果按匹配程度排序，只能使用页码分页
+     * @param after 上一页最后一条数据的位置，为null时查询第一页
+     * @param limit 最多返回的数据量
+     * */
+    List<Setmeal> getSetmealPage(PageCursor after, int limit);
+
     /**
      * 删除指定套餐
      * */
@@ -36,14 +50,41 @@ public interface SetmealService {
      * */
     int updateSetmeal(Setmeal setmeal);
 
+    /**
+     * 批量修改套餐的售卖状态，停售时同时将套餐菜品关系标记为删除，
+     * 在同一个事务中执行，有套餐不存在时整体回滚
+     * @param ids 套餐id
+     * @param status 新的状态，0停售，1启售
+     * */
+    int updateSetmealStatus(Collection<Long> ids, int status);
+
     /**
      * 根据id获取套餐
      * */
     Setmeal getSetmeal(Long id);
 
+    /**
+     * 按id批量查询套餐，只执行一次查询，结果顺序与ids相同，已删除的套餐被忽略
+     * @param ids 套餐id
+     * */
+    List<Setmeal> getSetmealByIds(List<Long> ids);
+
+    /**
+     * 获取套餐详情，包含分类名称、套餐中的菜品及菜品当前的状态和价格
+     * @param id 套餐id
+     * @return 套餐不存在时返回null
+     * */
+    SetmealDto getSetmealDetail(Long id);
+
     /**
      * 根据传入对象的参数查找对象
      * @param setmeal 查找参数
      * */
     List<Setmeal> getSetmeal(Setmeal setmeal);
+
+    /**
+     * 获取多个分类的套餐列表，只执行一次查询
+     * @param ids 分类id
+     * */
+    List<Setmeal> getSetmealByCategories(Collection<Long> ids);
 }
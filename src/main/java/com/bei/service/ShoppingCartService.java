@@ -3,6 +3,7 @@ package com.bei.service;
 import com.bei.model.ShoppingCart;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ShoppingCartService {
 
@@ -26,4 +27,26 @@ public interface ShoppingCartService {
      * 清空指定用户的购物车
      * */
     int deleteItemByUser(Long id);
+
+    /**
+     * 将redis中的购物车项批量写入数据库，已存在的项只更新数量
+     * 有主键的项每500条合并为一条insert ... on duplicate key update，并删除同一菜品主键不同的旧行，
+     * 没有主键的旧数据按用户和菜品逐条更新，更新不到时插入
+     * @return 写入的项数
+     * */
+    int saveShoppingCarts(List<ShoppingCart> shoppingCarts);
+
+    /**
+     * 批量删除已经移出购物车的项，每250项合并为一条delete
+     * @param removed 用户id到菜品或套餐id
+     * @return 删除的行数
+     * */
+    int deleteShoppingCarts(Map<Long, List<Long>> removed);
+
+    /**
+     * 删除用户在数据库中不在指定菜品或套餐之列的项，用于整个写入购物车时清除之前已经移出的项
+     * @param kept 用户id到购物车中现有的菜品或套餐id，为空列表时删除该用户的所有项
+     * @return 删除的行数
+     * */
+    int deleteShoppingCartsExcept(Map<Long, List<Long>> kept);
 }
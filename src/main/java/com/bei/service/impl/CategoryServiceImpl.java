@@ -1,5 +1,7 @@
 package com.bei.service.impl;
 
+import com.bei.common.cache.PageCountCache;
+import com.bei.common.page.PageCursor;
 import com.bei.dto.param.CategoryParam;
 import com.bei.dto.AdminUserDetail;
 import com.bei.mapper.CategoryMapper;
@@ -8,19 +10,40 @@ import com.bei.model.CategoryExample;
 import com.bei.service.CategoryService;
 import com.bei.utils.SnowflakeIdUtils;
 import com.github.pagehelper.PageHelper;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
+/**
+ * 分类数据很少且很少修改，全部加载到内存中作为字典，按id查询和按类别查询都不访问数据库
+ * 字典加载后不再修改，重新加载时整体替换，返回的分类对象由所有调用方共享，不能修改
+ * */
 @Service
+@Slf4j
 public class CategoryServiceImpl implements CategoryService {
 
+    @Autowired
+    private PageCountCache pageCountCache;
+
     @Autowired
     private CategoryMapper categoryMapper;
 
+    /** 分类字典，key为分类id，按sort排序，第一次使用时加载 */
+    private final AtomicReference<Map<Long, Category>> dictionary = new AtomicReference<>();
+
     @Override
     public int addCategory(String name, Integer type, Integer sort) {
         Category category = new Category();
@@ -34,20 +57,37 @@ public class CategoryServiceImpl implements CategoryService {
         category.setUpdateTime(new Date());
         category.setCreateUser(principal.getId());
         category.setUpdateUser(principal.getId());
-        return categoryMapper.insert(category);
+        int count = categoryMapper.insert(category);
+        reloadAfterCommit();
+        return count;
     }
 
     @Override
     public List<Category> getCategoryPage(int page, int pageSize) {
-        PageHelper.startPage(page, pageSize);
         CategoryExample example = new CategoryExample();
         example.setOrderByClause("sort");
+        return pageCountCache.page(PAGE_COUNT_CACHE, null, page, pageSize,
+                () -> categoryMapper.countByExample(example), () -> categoryMapper.selectByExample(example));
+    }
+
+    @Override
+    public List<Category> getCategoryPage(PageCursor after, int limit) {
+        CategoryExample example = new CategoryExample();
+        if (after != null) {
+            // (sort, id) > (?, ?)，拆成两个条件以便使用索引
+            example.or().andSortGreaterThan(after.getSort());
+            example.or().andSortEqualTo(after.getSort()).andIdGreaterThan(after.getId());
+        }
+        example.setOrderByClause("sort, id");
+        PageHelper.startPage(1, limit, false);
         return categoryMapper.selectByExample(example);
     }
 
     @Override
     public int deleteCategory(Long id) {
-        return categoryMapper.deleteByPrimaryKey(id);
+        int count = categoryMapper.deleteByPrimaryKey(id);
+        reloadAfterCommit();
+        return count;
     }
 
     @Override
@@ -59,19 +99,68 @@ public class CategoryServiceImpl implements CategoryService {
         category.setSort(categoryParam.getSort());
         category.setUpdateUser(principal.getId());
         category.setUpdateTime(new Date());
-        return categoryMapper.updateByPrimaryKeySelective(category);
+        int count = categoryMapper.updateByPrimaryKeySelective(category);
+        reloadAfterCommit();
+        return count;
     }
 
     @Override
     public List<Category> getCategoryByType(Integer type) {
-        CategoryExample example = new CategoryExample();
-        example.createCriteria().andTypeEqualTo(type);
-        example.setOrderByClause("sort");
-        return categoryMapper.selectByExample(example);
+        return dictionary().values().stream()
+                .filter(category -> type.equals(category.getType()))
+                .collect(Collectors.toList());
     }
 
     @Override
     public Category getCategoryById(Long cid) {
-        return categoryMapper.selectByPrimaryKey(cid);
+        return dictionary().get(cid);
+    }
+
+    @Override
+    public Map<Long, Category> getCategoryByIds(Collection<Long> cids) {
+        Map<Long, Category> dictionary = dictionary();
+        Map<Long, Category> categories = new HashMap<>();
+        for (Long cid : cids) {
+            Category category = dictionary.get(cid);
+            if (category != null) {
+                categories.put(cid, category);
+            }
+        }
+        return categories;
+    }
+
+    @Override
+    public synchronized void reloadCategories() {
+        CategoryExample example = new CategoryExample();
+        example.setOrderByClause("sort, id");
+        Map<Long, Category> categories = new LinkedHashMap<>();
+        categoryMapper.selectByExample(example).forEach(category -> categories.put(category.getId(), category));
+        dictionary.set(Collections.unmodifiableMap(categories));
+        log.debug("分类字典已重新加载, 共{}个分类", categories.size());
+    }
+
+    private Map<Long, Category> dictionary() {
+        Map<Long, Category> categories = dictionary.get();
+        if (categories == null) {
+            reloadCategories();
+            categories = dictionary.get();
+        }
+        return categories;
+    }
+
+    /**
+     * 当前事务提交后重新加载分类字典，回滚时不加载
+     * */
+    private void reloadAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadCategories();
+                }
+            });
+        } else {
+            reloadCategories();
+        }
     }
 }
@@ -10,8 +10,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -57,6 +61,17 @@ public class DishFlavorServiceImpl implements DishFlavorService {
         return dishFlavorMapper.selectByExample(example);
     }
 
+    @Override
+    public Map<Long, List<DishFlavor>> getFlavorByDishes(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        DishFlavorExample example = new DishFlavorExample();
+        example.createCriteria().andDishIdIn(new ArrayList<>(ids));
+        return dishFlavorMapper.selectByExample(example).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
+    }
+
     @Override
     public void removeByDish(Long id) {
         DishFlavorExample example = new DishFlavorExample();
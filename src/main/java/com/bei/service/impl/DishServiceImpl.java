@@ -1,28 +1,52 @@
 package com.bei.service.impl;
 
+import com.bei.common.BusinessException;
+import com.bei.common.cache.PageCountCache;
+import com.bei.common.page.PageCursor;
+import com.bei.common.search.MenuSearchIndex;
 import com.bei.dto.AdminUserDetail;
+import com.bei.dto.DishDto;
 import com.bei.mapper.DishMapper;
 import com.bei.model.Dish;
 import com.bei.model.DishExample;
+import com.bei.model.SetmealDish;
 import com.bei.service.DishService;
+import com.bei.service.SetmealDishService;
+import com.bei.utils.PageUtils;
 import com.bei.utils.SnowflakeIdUtils;
+import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
 public class DishServiceImpl implements DishService {
 
+    @Autowired
+    private PageCountCache pageCountCache;
+
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
     @Autowired
     private DishMapper dishMapper;
 
+    @Autowired
+    private SetmealDishService setmealDishService;
+
     @Override
     public List<Dish> getDishByCategory(Long id) {
         DishExample dishExample = new DishExample();
@@ -31,6 +55,17 @@ public class DishServiceImpl implements DishService {
         return dishMapper.selectByExample(dishExample);
     }
 
+    @Override
+    public List<Dish> getDishByCategories(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        DishExample dishExample = new DishExample();
+        dishExample.createCriteria().andCategoryIdIn(new ArrayList<>(ids));
+        dishExample.setOrderByClause("sort");
+        return dishMapper.selectByExample(dishExample);
+    }
+
     @Override
     public long getCountByCategory(Long id) {
         DishExample dishExample = new DishExample();
@@ -55,14 +90,48 @@ public class DishServiceImpl implements DishService {
 
     @Override
     public List<Dish> getDishPage(int page, int pageSize, String name) {
-        PageHelper.startPage(page, pageSize);
+        if (StringUtils.isNotBlank(name) && menuSearchIndex.isReady()) {
+            Page<Long> ids = PageUtils.page(menuSearchIndex.searchDishes(name).stream()
+                    .map(DishDto::getId)
+                    .collect(Collectors.toList()), page, pageSize);
+            return PageUtils.convert(ids, this::getDishByIds);
+        }
         DishExample example = new DishExample();
         if (StringUtils.isNotBlank(name)) {
             example.createCriteria().andNameEqualTo(name);
         }
+        return pageCountCache.page(PAGE_COUNT_CACHE, name, page, pageSize,
+                () -> dishMapper.countByExample(example), () -> dishMapper.selectByExample(example));
+    }
+
+    @Override
+    public List<Dish> getDishPage(PageCursor after, int limit) {
+        DishExample example = new DishExample();
+        if (after != null) {
+            // (sort, id) > (?, ?)，拆成两个条件以便使用索引
+            example.or().andSortGreaterThan(after.getSort());
+            example.or().andSortEqualTo(after.getSort()).andIdGreaterThan(after.getId());
+        }
+        example.setOrderByClause("sort, id");
+        PageHelper.startPage(1, limit, false);
         return dishMapper.selectByExample(example);
     }
 
+    @Override
+    public List<Dish> getDishByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        DishExample example = new DishExample();
+        example.createCriteria().andIdIn(ids);
+        Map<Long, Dish> dishes = dishMapper.selectByExample(example).stream()
+                .collect(Collectors.toMap(Dish::getId, dish -> dish));
+        return ids.stream()
+                .map(dishes::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Dish getDishById(Long id) {
         return dishMapper.selectByPrimaryKey(id);
@@ -76,6 +145,31 @@ public class DishServiceImpl implements DishService {
         return dishMapper.updateByPrimaryKeySelective(dish);
     }
 
+    @Override
+    @Transactional
+    public int updateDishStatus(Collection<Long> ids, int status) {
+        List<Long> idList = ids.stream().distinct().collect(Collectors.toList());
+        if (idList.isEmpty()) {
+            return 0;
+        }
+        AdminUserDetail principal = (AdminUserDetail) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        Dish dish = new Dish();
+        dish.setStatus(status);
+        dish.setUpdateTime(new Date());
+        dish.setUpdateUser(principal.getId());
+        DishExample example = new DishExample();
+        example.createCriteria().andIdIn(idList);
+        int count = dishMapper.updateByExampleSelective(dish, example);
+        if (count != idList.size()) {
+            throw new BusinessException("修改菜品状态失败，请检查参数是否正确");
+        }
+        // 停售的菜品在套餐中标记为删除，启售时恢复
+        SetmealDish setmealDish = new SetmealDish();
+        setmealDish.setIsDeleted(status == 0 ? 1 : 0);
+        setmealDishService.updateByDishes(idList, setmealDish);
+        return count;
+    }
+
     @Override
     public int deleteDishBatches(List<Long> idList) {
         DishExample example = new DishExample();
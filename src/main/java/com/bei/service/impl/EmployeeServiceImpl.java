@@ -1,5 +1,7 @@
 package com.bei.service.impl;
 
+import com.bei.common.cache.PageCountCache;
+import com.bei.common.page.PageCursor;
 import com.bei.dto.param.EmployeeParam;
 import com.bei.dto.AdminUserDetail;
 import com.bei.mapper.EmployeeMapper;
@@ -29,6 +31,9 @@ import java.util.List;
 @Import({BCryptPasswordEncoder.class})
 public class EmployeeServiceImpl implements EmployeeService {
 
+    @Autowired
+    private PageCountCache pageCountCache;
+
     @Autowired
     private EmployeeMapper employeeMapper;
 
@@ -95,11 +100,33 @@ public class EmployeeServiceImpl implements EmployeeService {
 
     @Override
     public List<Employee> getEmployeePage(int page, int pageSize, String name) {
-        PageHelper.startPage(page, pageSize);
         EmployeeExample example = new EmployeeExample();
         if (StringUtils.isNotBlank(name)) {
             example.createCriteria().andUsernameEqualTo(name);
         }
+        return pageCountCache.page(PAGE_COUNT_CACHE, name, page, pageSize,
+                () -> employeeMapper.countByExample(example), () -> employeeMapper.selectByExample(example));
+    }
+
+    @Override
+    public List<Employee> getEmployeePage(PageCursor after, int limit, String name) {
+        EmployeeExample example = new EmployeeExample();
+        EmployeeExample.Criteria criteria = example.or();
+        if (StringUtils.isNotBlank(name)) {
+            criteria.andUsernameEqualTo(name);
+        }
+        if (after != null) {
+            // (update_time, id) < (?, ?)，拆成两个条件以便使用索引
+            criteria.andUpdateTimeLessThan(after.getTime());
+            EmployeeExample.Criteria sameTime = example.or()
+                    .andUpdateTimeEqualTo(after.getTime())
+                    .andIdLessThan(after.getId());
+            if (StringUtils.isNotBlank(name)) {
+                sameTime.andUsernameEqualTo(name);
+            }
+        }
+        example.setOrderByClause("update_time desc, id desc");
+        PageHelper.startPage(1, limit, false);
         return employeeMapper.selectByExample(example);
     }
 
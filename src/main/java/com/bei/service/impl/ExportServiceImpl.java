@@ -0,0 +1,138 @@
+package com.bei.service.impl;
+
+import com.bei.component.CursorStatementInterceptor;
+import com.bei.mapper.ExportMapper;
+import com.bei.model.Category;
+import com.bei.model.Dish;
+import com.bei.model.Orders;
+import com.bei.model.Setmeal;
+import com.bei.service.CategoryService;
+import com.bei.service.ExportService;
+import com.bei.utils.CsvWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 通过MyBatis游标逐行读取数据并写入输出流，内存占用与数据量无关
+ * 游标在只读事务中打开，写入失败(客户端断开)或线程被中断时先取消查询，再关闭游标并结束事务
+ * */
+@Service
+@Slf4j
+public class ExportServiceImpl implements ExportService {
+
+    /** 每写入多少行刷新一次输出流 */
+    private static final int FLUSH_ROWS = 500;
+
+    @Autowired
+    private ExportMapper exportMapper;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Override
+    public void exportDishes(OutputStream out) throws IOException {
+        Map<Long, String> categories = categoryNames();
+        CsvWriter csv = new CsvWriter(out);
+        csv.row("id", "名称", "分类", "价格", "编码", "售卖状态", "描述", "更新时间");
+        export("菜品", exportMapper::selectDishes, csv, (Dish dish) -> csv.row(dish.getId(), dish.getName(),
+                categories.get(dish.getCategoryId()), dish.getPrice(), dish.getCode(), dish.getStatus(),
+                dish.getDescription(), dish.getUpdateTime()));
+    }
+
+    @Override
+    public void exportSetmeals(OutputStream out) throws IOException {
+        Map<Long, String> categories = categoryNames();
+        CsvWriter csv = new CsvWriter(out);
+        csv.row("id", "名称", "分类", "价格", "编码", "售卖状态", "描述", "更新时间");
+        export("套餐", exportMapper::selectSetmeals, csv, (Setmeal setmeal) -> csv.row(setmeal.getId(),
+                setmeal.getName(), categories.get(setmeal.getCategoryId()), setmeal.getPrice(), setmeal.getCode(),
+                setmeal.getStatus(), setmeal.getDescription(), setmeal.getUpdateTime()));
+    }
+
+    @Override
+    public void exportOrders(Date beginTime, Date endTime, OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out);
+        csv.row("订单号", "状态", "用户id", "用户名", "收货人", "地址", "金额", "支付方式", "下单时间", "结账时间", "备注");
+        export("订单", () -> exportMapper.selectOrders(beginTime, endTime), csv, (Orders orders) -> csv.row(
+                orders.getNumber(), orders.getStatus(), orders.getUserId(), orders.getUserName(),
+                orders.getConsignee(), orders.getAddress(), orders.getAmount(), orders.getPayMethod(),
+                orders.getOrderTime(), orders.getCheckoutTime(), orders.getRemark()));
+    }
+
+    /**
+     * 在只读事务中遍历游标，逐行写入
+     * */
+    private <T> void export(String name, Supplier<Cursor<T>> query, CsvWriter csv, RowWriter<T> rowWriter)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            Long rows = transaction.execute(status -> {
+                long count = 0;
+                try (Cursor<T> cursor = query.get()) {
+                    boolean completed = false;
+                    try {
+                        for (T row : cursor) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                throw new InterruptedIOException("导出被中断");
+                            }
+                            rowWriter.write(row);
+                            if (++count % FLUSH_ROWS == 0) {
+                                csv.flush();
+                            }
+                        }
+                        completed = true;
+                    } finally {
+                        if (!completed) {
+                            // 不取消时关闭游标会读完剩余的所有行
+                            CursorStatementInterceptor.cancel();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    CursorStatementInterceptor.clear();
+                }
+                return count;
+            });
+            csv.flush();
+            log.info("导出{}完成, 共{}行, 耗时{}ms", name, rows, System.currentTimeMillis() - start);
+        } catch (UncheckedIOException e) {
+            log.info("导出{}已取消: {}", name, e.getCause().getMessage());
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 流式读取期间连接不能执行其他查询，分类名称在打开游标之前准备好
+     * */
+    private Map<Long, String> categoryNames() {
+        Map<Long, String> names = new HashMap<>();
+        for (Integer type : new Integer[]{Category.DISH_CATEGORY, Category.COMBO_CATEGORY}) {
+            categoryService.getCategoryByType(type).forEach(category -> names.put(category.getId(), category.getName()));
+        }
+        return names;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter<T> {
+        void write(T row) throws IOException;
+    }
+}
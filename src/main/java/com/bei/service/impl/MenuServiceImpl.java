@@ -0,0 +1,329 @@
+package com.bei.service.impl;
+
+import com.bei.common.CommonResult;
+import com.bei.common.cache.CacheEvictEvent;
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.menu.MenuSnapshot;
+import com.bei.common.search.MenuSearchIndex;
+import com.bei.dto.DishDto;
+import com.bei.model.Category;
+import com.bei.model.Dish;
+import com.bei.model.DishFlavor;
+import com.bei.model.Setmeal;
+import com.bei.service.CategoryService;
+import com.bei.service.DishFlavorService;
+import com.bei.service.DishService;
+import com.bei.service.MenuService;
+import com.bei.service.SetmealService;
+import com.bei.utils.GzipUtils;
+import com.bei.vo.MenuCategoryVo;
+import com.bei.vo.MenuVo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * 菜单快照的加载和更新
+ * 后台修改菜单数据后根据@CleanCache的标签找出受影响的分类，事务提交后通过redis频道通知所有节点，
+ * 各节点只重新加载这些分类，生成新的快照后原子替换
+ * */
+@Service
+@Slf4j
+public class MenuServiceImpl implements MenuService, MessageListener {
+
+    /** 菜单更新通知频道，消息格式为 版本号:逗号分隔的分类id */
+    public static final String REFRESH_CHANNEL = "menu:refresh";
+
+    private static final String VERSION_KEY = "menu:version";
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private DishService dishService;
+
+    @Autowired
+    private DishFlavorService dishFlavorService;
+
+    @Autowired
+    private SetmealService setmealService;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private CachedResponseWriter responseWriter;
+
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    /** 快照还没有加载成功时，两次重新加载之间的最小间隔(ms) */
+    @Value("${menu.snapshot.retry-interval:10000}")
+    private long retryInterval;
+
+    private final AtomicReference<MenuSnapshot> snapshot = new AtomicReference<>(MenuSnapshot.EMPTY);
+
+    /** 下一次允许在请求中重新加载快照的时间 */
+    private final AtomicLong nextRetry = new AtomicLong();
+
+    /**
+     * 启动时加载失败的情况下，在读取时重新加载，同一时间间隔内只有一个请求会去加载，
+     * 其余请求和加载失败的请求直接返回空快照，数据库不可用时不会每个请求都去查询
+     * */
+    @Override
+    public MenuSnapshot getSnapshot() {
+        MenuSnapshot current = snapshot.get();
+        if (current == MenuSnapshot.EMPTY) {
+            long now = System.currentTimeMillis();
+            long retry = nextRetry.get();
+            if (now >= retry && nextRetry.compareAndSet(retry, now + retryInterval)) {
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    log.warn("加载菜单快照失败，{}ms后重试", retryInterval, e);
+                }
+                current = snapshot.get();
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public void rebuild() {
+        rebuild(null, currentVersion());
+    }
+
+    @Override
+    public List<DishDto> searchDishes(String keyword) {
+        if (!menuSearchIndex.isReady()) {
+            getSnapshot();
+        }
+        return menuSearchIndex.searchDishes(keyword);
+    }
+
+    @Override
+    public List<Setmeal> searchSetmeals(String keyword) {
+        if (!menuSearchIndex.isReady()) {
+            getSnapshot();
+        }
+        return menuSearchIndex.searchSetmeals(keyword);
+    }
+
+    @Override
+    public void refreshIfStale() {
+        long version = currentVersion();
+        if (snapshot.get() == MenuSnapshot.EMPTY) {
+            log.info("菜单快照还没有加载，全量加载");
+            rebuild(null, version);
+        } else if (version > snapshot.get().getVersion()) {
+            log.info("菜单快照版本{}落后于{}，重新加载", snapshot.get().getVersion(), version);
+            rebuild(null, version);
+        }
+    }
+
+    @Override
+    public void refresh(Collection<Long> categoryIds) {
+        String message = categoryIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(message);
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    /**
+     * 根据清除的缓存标签找出数据发生变化的分类
+     * 菜品和套餐的新分类按类型各用一次IN查询获取，不随标签数量增加查询次数
+     * */
+    @EventListener
+    public void onCacheEvict(CacheEvictEvent event) {
+        MenuSnapshot current = snapshot.get();
+        Set<Long> categoryIds = new HashSet<>();
+        List<Long> dishIds = new ArrayList<>();
+        List<Long> setmealIds = new ArrayList<>();
+        boolean changed = false;
+        for (String tag : event.getTags()) {
+            int index = tag.indexOf(':');
+            if (index < 0) {
+                changed |= "categories".equals(tag);
+                continue;
+            }
+            String id = tag.substring(index + 1);
+            if (!StringUtils.isNumeric(id) || id.isEmpty()) {
+                continue;
+            }
+            Long value = Long.valueOf(id);
+            switch (tag.substring(0, index)) {
+                case "category":
+                case "dishes":
+                case "setmeals":
+                    categoryIds.add(value);
+                    break;
+                case "dish":
+                    // 菜品可能被移动到其他分类，原分类和新分类都需要重新加载
+                    addIfPresent(categoryIds, current.getDishCategory(value));
+                    dishIds.add(value);
+                    break;
+                case "setmeal":
+                    addIfPresent(categoryIds, current.getSetmealCategory(value));
+                    setmealIds.add(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        dishService.getDishByIds(dishIds).forEach(dish -> addIfPresent(categoryIds, dish.getCategoryId()));
+        setmealService.getSetmealByIds(setmealIds).forEach(setmeal -> addIfPresent(categoryIds, setmeal.getCategoryId()));
+        if (changed || !categoryIds.isEmpty()) {
+            refresh(categoryIds);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        long version = Long.parseLong(body.substring(0, index));
+        List<Long> categoryIds = Arrays.stream(body.substring(index + 1).split(","))
+                .filter(StringUtils::isNotEmpty)
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+        try {
+            rebuild(categoryIds, version);
+        } catch (Exception e) {
+            log.warn("更新菜单快照失败，等待定时任务重新加载, 分类: {}", categoryIds, e);
+        }
+    }
+
+    private void publish(String message) {
+        Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+        redisTemplate.convertAndSend(REFRESH_CHANNEL, version + ":" + message);
+    }
+
+    private long currentVersion() {
+        String version = redisTemplate.opsForValue().get(VERSION_KEY);
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    /**
+     * 重新加载分类列表和指定分类下的菜品和套餐，新增的分类总是会加载，已删除的分类被移除
+     * 加载过程串行执行，读取快照不受影响
+     * 更新通知的版本号递增和发送不是原子的，通知可能乱序或丢失，
+     * 版本号不连续时说明有通知还没有收到，改为全量加载，已经处理过的版本只重新加载分类，不修改版本号
+     * @param categoryIds 需要重新加载的分类，为null时加载全部
+     * @param version 本次加载对应的菜单版本号，全量加载时需要在读取数据库之前获取
+     * */
+    private synchronized void rebuild(Collection<Long> categoryIds, long version) {
+        long start = System.currentTimeMillis();
+        MenuSnapshot current = snapshot.get();
+        if (categoryIds != null && version > current.getVersion() + 1) {
+            log.info("菜单更新通知不连续, 快照版本{}, 收到版本{}, 全量重新加载", current.getVersion(), version);
+            categoryIds = null;
+            version = currentVersion();
+        } else if (categoryIds != null && version <= current.getVersion()) {
+            version = current.getVersion();
+        }
+        categoryService.reloadCategories();
+        List<Category> categories = new ArrayList<>(categoryService.getCategoryByType(Category.DISH_CATEGORY));
+        categories.addAll(categoryService.getCategoryByType(Category.COMBO_CATEGORY));
+        Set<Long> existing = categories.stream().map(Category::getId).collect(Collectors.toSet());
+        Set<Long> targets = new HashSet<>(categoryIds == null ? existing : categoryIds);
+        existing.stream()
+                .filter(id -> current.getMenu(id) == null)
+                .forEach(targets::add);
+        targets.retainAll(existing);
+
+        List<Dish> dishes = dishService.getDishByCategories(targets);
+        Map<Long, List<DishFlavor>> flavors = dishFlavorService.getFlavorByDishes(dishes.stream()
+                .map(Dish::getId)
+                .collect(Collectors.toList()));
+        Map<Long, List<Setmeal>> setmeals = setmealService.getSetmealByCategories(targets).stream()
+                .collect(Collectors.groupingBy(Setmeal::getCategoryId));
+        Map<Long, List<DishDto>> dishDtos = new LinkedHashMap<>();
+        Map<Long, Category> categoryMap = categories.stream()
+                .collect(Collectors.toMap(Category::getId, category -> category));
+        for (Dish dish : dishes) {
+            DishDto dishDto = new DishDto();
+            BeanUtils.copyProperties(dish, dishDto);
+            dishDto.setCategoryName(categoryMap.get(dish.getCategoryId()).getName());
+            dishDto.setFlavors(flavors.getOrDefault(dish.getId(), Collections.emptyList()));
+            dishDtos.computeIfAbsent(dish.getCategoryId(), id -> new ArrayList<>()).add(dishDto);
+        }
+
+        Map<Long, MenuCategoryVo> menus = new LinkedHashMap<>();
+        for (Category category : categories) {
+            Long id = category.getId();
+            menus.put(id, targets.contains(id)
+                    ? new MenuCategoryVo(category, dishDtos.getOrDefault(id, Collections.emptyList()),
+                            setmeals.getOrDefault(id, Collections.emptyList()))
+                    : current.getMenu(id));
+        }
+        byte[] body = serialize(version, menus.values());
+        String digest = DigestUtils.md5DigestAsHex(toJson(menus.values()));
+        MenuSnapshot next = new MenuSnapshot(version, digest, categories, menus, body, GzipUtils.compress(body));
+        snapshot.set(next);
+        menuSearchIndex.update(current, next, targets);
+        log.info("菜单快照已更新, 版本: {}, 重新加载{}个分类, 响应体{}字节(压缩后{}字节), 耗时{}ms", next.getVersion(),
+                targets.size(), body.length, next.getGzipBody().length, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 将起售的菜品和套餐序列化为/menu/snapshot的响应体，每次更新快照时只序列化一次
+     * */
+    private byte[] serialize(long version, Collection<MenuCategoryVo> menus) {
+        List<MenuCategoryVo> categories = menus.stream()
+                .map(menu -> new MenuCategoryVo(menu.getCategory(),
+                        menu.getDishes().stream()
+                                .filter(dish -> Integer.valueOf(1).equals(dish.getStatus()))
+                                .collect(Collectors.toList()),
+                        menu.getSetmeals().stream()
+                                .filter(setmeal -> Integer.valueOf(1).equals(setmeal.getStatus()))
+                                .collect(Collectors.toList())))
+                .collect(Collectors.toList());
+        return toJson(CommonResult.success(new MenuVo(version, categories)));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return responseWriter.serialize(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化菜单失败", e);
+        }
+    }
+
+    private void addIfPresent(Set<Long> categoryIds, Long categoryId) {
+        if (categoryId != null) {
+            categoryIds.add(categoryId);
+        }
+    }
+}
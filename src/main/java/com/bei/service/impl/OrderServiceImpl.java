@@ -1,19 +1,24 @@
 package com.bei.service.impl;
 
+import com.bei.common.cache.PageCountCache;
+import com.bei.dto.param.OrderPageParam;
 import com.bei.mapper.OrderDetailMapper;
 import com.bei.mapper.OrdersMapper;
 import com.bei.model.*;
 import com.bei.service.OrderService;
 import com.bei.utils.SnowflakeIdUtils;
 import com.bei.vo.OrderVo;
+import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -26,6 +31,9 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderDetailMapper orderDetailMapper;
 
+    @Autowired
+    private PageCountCache pageCountCache;
+
     @Override
     public String submitOrder(Orders orders, List<ShoppingCart> shoppingCartList, AddressBook address, User user) {
         SnowflakeIdUtils snowflakeIdUtils = new SnowflakeIdUtils(5, 1);
@@ -80,4 +88,31 @@ public class OrderServiceImpl implements OrderService {
         pageInfo.setList(orderVoList);
         return pageInfo;
     }
+
+    @Override
+    public PageInfo<Orders> getOrderPage(OrderPageParam param) {
+        OrdersExample example = new OrdersExample();
+        OrdersExample.Criteria criteria = example.createCriteria();
+        if (StringUtils.isNotBlank(param.getNumber())) {
+            criteria.andNumberEqualTo(param.getNumber());
+        }
+        if (param.getBeginTime() != null) {
+            criteria.andOrderTimeGreaterThanOrEqualTo(param.getBeginTime());
+        }
+        if (param.getEndTime() != null) {
+            criteria.andOrderTimeLessThanOrEqualTo(param.getEndTime());
+        }
+        example.setOrderByClause("order_time desc");
+        Page<Orders> orders;
+        if (param.isEstimate() && !criteria.isValid()) {
+            orders = pageCountCache.page(pageCountCache.estimate("orders"), param.getPage(), param.getPageSize(),
+                    () -> ordersMapper.selectByExample(example));
+        } else {
+            orders = pageCountCache.page(PAGE_COUNT_CACHE,
+                    Arrays.asList(param.getNumber(), param.getBeginTime(), param.getEndTime()),
+                    param.getPage(), param.getPageSize(),
+                    () -> ordersMapper.countByExample(example), () -> ordersMapper.selectByExample(example));
+        }
+        return new PageInfo<>(orders);
+    }
 }
@@ -1,27 +1,61 @@
 package com.bei.service.impl;
 
+import com.bei.common.BusinessException;
+import com.bei.common.cache.PageCountCache;
+import com.bei.common.page.PageCursor;
+import com.bei.common.search.MenuSearchIndex;
 import com.bei.dto.AdminUserDetail;
+import com.bei.dto.SetmealDto;
 import com.bei.dto.param.PageParam;
+import com.bei.mapper.SetmealDetailMapper;
 import com.bei.mapper.SetmealMapper;
+import com.bei.model.Category;
 import com.bei.model.Setmeal;
+import com.bei.model.SetmealDish;
 import com.bei.model.SetmealExample;
+import com.bei.service.CategoryService;
+import com.bei.service.SetmealDishService;
 import com.bei.service.SetmealService;
+import com.bei.utils.PageUtils;
 import com.bei.utils.SnowflakeIdUtils;
+import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import org.apache.commons.lang.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Service
 public class SetMealServiceImpl implements SetmealService {
 
+    @Autowired
+    private PageCountCache pageCountCache;
+
     @Autowired
     private SetmealMapper setmealMapper;
 
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+
+    @Autowired
+    private SetmealDetailMapper setmealDetailMapper;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private SetmealDishService setmealDishService;
+
     @Override
     public long getCountByCategory(Long id) {
         SetmealExample example = new SetmealExample();
@@ -45,14 +79,58 @@ public class SetMealServiceImpl implements SetmealService {
 
     @Override
     public List<Setmeal> getSetmealPage(PageParam pageParam) {
-        PageHelper.startPage(pageParam.getPage(), pageParam.getPageSize());
+        if (StringUtils.isNotBlank(pageParam.getName()) && menuSearchIndex.isReady()) {
+            Page<Long> ids = PageUtils.page(menuSearchIndex.searchSetmeals(pageParam.getName()).stream()
+                    .map(Setmeal::getId)
+                    .collect(Collectors.toList()), pageParam.getPage(), pageParam.getPageSize());
+            return PageUtils.convert(ids, this::getSetmealByIds);
+        }
         SetmealExample example = new SetmealExample();
         if (StringUtils.isNotBlank(pageParam.getName())) {
             example.createCriteria().andNameEqualTo(pageParam.getName());
         }
+        return pageCountCache.page(PAGE_COUNT_CACHE, pageParam.getName(), pageParam.getPage(), pageParam.getPageSize(),
+                () -> setmealMapper.countByExample(example), () -> setmealMapper.selectByExample(example));
+    }
+
+    @Override
+    public List<Setmeal> getSetmealPage(PageCursor after, int limit) {
+        SetmealExample example = new SetmealExample();
+        if (after != null) {
+            // (create_time, id) < (?, ?)，拆成两个条件以便使用索引
+            example.or().andCreateTimeLessThan(after.getTime());
+            example.or().andCreateTimeEqualTo(after.getTime()).andIdLessThan(after.getId());
+        }
+        example.setOrderByClause("create_time desc, id desc");
+        PageHelper.startPage(1, limit, false);
         return setmealMapper.selectByExample(example);
     }
 
+    @Override
+    public List<Setmeal> getSetmealByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SetmealExample example = new SetmealExample();
+        example.createCriteria().andIdIn(ids);
+        Map<Long, Setmeal> setmeals = setmealMapper.selectByExample(example).stream()
+                .collect(Collectors.toMap(Setmeal::getId, setmeal -> setmeal));
+        return ids.stream()
+                .map(setmeals::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public SetmealDto getSetmealDetail(Long id) {
+        SetmealDto setmealDto = setmealDetailMapper.selectSetmealDetail(id);
+        if (setmealDto != null) {
+            Category category = categoryService.getCategoryById(setmealDto.getCategoryId());
+            setmealDto.setCategoryName(category == null ? null : category.getName());
+        }
+        return setmealDto;
+    }
+
     @Override
     public int deleteSetmeal(Long id) {
         return setmealMapper.deleteByPrimaryKey(id);
@@ -66,11 +144,47 @@ public class SetMealServiceImpl implements SetmealService {
         return setmealMapper.updateByPrimaryKeySelective(setmeal);
     }
 
+    @Override
+    @Transactional
+    public int updateSetmealStatus(Collection<Long> ids, int status) {
+        List<Long> idList = ids.stream().distinct().collect(Collectors.toList());
+        if (idList.isEmpty()) {
+            return 0;
+        }
+        AdminUserDetail principal = (AdminUserDetail) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        Setmeal setmeal = new Setmeal();
+        setmeal.setStatus(status);
+        setmeal.setUpdateTime(new Date());
+        setmeal.setUpdateUser(principal.getId());
+        SetmealExample example = new SetmealExample();
+        example.createCriteria().andIdIn(idList);
+        int count = setmealMapper.updateByExampleSelective(setmeal, example);
+        if (count != idList.size()) {
+            throw new BusinessException("修改套餐状态失败，请检查参数是否正确");
+        }
+        if (status == 0) {
+            SetmealDish setmealDish = new SetmealDish();
+            setmealDish.setIsDeleted(1);
+            setmealDishService.updateBySetmeals(idList, setmealDish);
+        }
+        return count;
+    }
+
     @Override
     public Setmeal getSetmeal(Long id) {
         return setmealMapper.selectByPrimaryKey(id);
     }
 
+    @Override
+    public List<Setmeal> getSetmealByCategories(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SetmealExample example = new SetmealExample();
+        example.createCriteria().andCategoryIdIn(new ArrayList<>(ids));
+        return setmealMapper.selectByExample(example);
+    }
+
     @Override
     public List<Setmeal> getSetmeal(Setmeal setmeal) {
         SetmealExample example = new SetmealExample();
@@ -10,6 +10,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -65,4 +66,33 @@ public class SetmealDishServiceImpl implements SetmealDishService {
         }
         setmealDishMapper.updateByExampleSelective(setmealDish, example);
     }
+
+    @Override
+    public int updateByDishes(Collection<Long> dishIds, SetmealDish setmealDish) {
+        if (dishIds.isEmpty()) {
+            return 0;
+        }
+        SetmealDishExample example = new SetmealDishExample();
+        example.createCriteria().andDishIdIn(toStrings(dishIds));
+        return setmealDishMapper.updateByExampleSelective(setmealDish, example);
+    }
+
+    @Override
+    public int updateBySetmeals(Collection<Long> setmealIds, SetmealDish setmealDish) {
+        if (setmealIds.isEmpty()) {
+            return 0;
+        }
+        SetmealDishExample example = new SetmealDishExample();
+        example.createCriteria().andSetmealIdIn(toStrings(setmealIds));
+        return setmealDishMapper.updateByExampleSelective(setmealDish, example);
+    }
+
+    /**
+     * setmeal_dish中的菜品id和套餐id以字符串保存
+     * */
+    private List<String> toStrings(Collection<Long> ids) {
+        return ids.stream()
+                .map(String::valueOf)
+                .collect(Collectors.toList());
+    }
 }
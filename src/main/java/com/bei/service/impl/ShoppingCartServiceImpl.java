@@ -1,17 +1,29 @@
 package com.bei.service.impl;
 
+import com.bei.common.BusinessException;
 import com.bei.mapper.ShoppingCartMapper;
 import com.bei.model.ShoppingCart;
 import com.bei.model.ShoppingCartExample;
 import com.bei.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
+@Slf4j
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
+    /** 每条批量写入语句包含的最大行数 */
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    /** 每条批量删除语句包含的最大项数 */
+    private static final int DELETE_BATCH_SIZE = 250;
+
     @Autowired
     private ShoppingCartMapper shoppingCartMapper;
 
@@ -65,4 +77,99 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         example.createCriteria().andUserIdEqualTo(id);
         return shoppingCartMapper.deleteByExample(example);
     }
+
+    @Override
+    @Transactional
+    public int saveShoppingCarts(List<ShoppingCart> shoppingCarts) {
+        List<ShoppingCart> batch = new ArrayList<>(Math.min(shoppingCarts.size(), UPSERT_BATCH_SIZE));
+        for (ShoppingCart cart : shoppingCarts) {
+            if (cart.getId() == null) {
+                if (updateShoppingCart(cart) != 1 && addShoppingCart(cart) != 1) {
+                    log.debug("购物车信息写入磁盘失败，param: {}", cart);
+                    throw new BusinessException("购物车信息写入失败");
+                }
+                continue;
+            }
+            batch.add(cart);
+            if (batch.size() == UPSERT_BATCH_SIZE) {
+                upsert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            upsert(batch);
+        }
+        return shoppingCarts.size();
+    }
+
+    /**
+     * 写入一批有主键的购物车项
+     * 移出购物车后又加入的项在redis中有新的主键，先删除同一用户同一菜品主键不同的旧行
+     * */
+    private void upsert(List<ShoppingCart> batch) {
+        ShoppingCartExample example = new ShoppingCartExample();
+        for (ShoppingCart cart : batch) {
+            ShoppingCartExample.Criteria criteria = example.or()
+                    .andUserIdEqualTo(cart.getUserId())
+                    .andIdNotEqualTo(cart.getId());
+            if (cart.getDishId() != null) {
+                criteria.andDishIdEqualTo(cart.getDishId());
+            } else {
+                criteria.andSetmealIdEqualTo(cart.getSetmealId());
+            }
+        }
+        shoppingCartMapper.deleteByExample(example);
+        shoppingCartMapper.upsertBatch(batch);
+    }
+
+    @Override
+    public int deleteShoppingCarts(Map<Long, List<Long>> removed) {
+        int count = 0;
+        int lines = 0;
+        ShoppingCartExample example = new ShoppingCartExample();
+        for (Map.Entry<Long, List<Long>> entry : removed.entrySet()) {
+            for (Long foodId : entry.getValue()) {
+                // 菜品和套餐的id都是雪花id，不会重复，两列都匹配
+                example.or().andUserIdEqualTo(entry.getKey()).andDishIdEqualTo(foodId);
+                example.or().andUserIdEqualTo(entry.getKey()).andSetmealIdEqualTo(foodId);
+                if (++lines == DELETE_BATCH_SIZE) {
+                    count += shoppingCartMapper.deleteByExample(example);
+                    example = new ShoppingCartExample();
+                    lines = 0;
+                }
+            }
+        }
+        if (lines > 0) {
+            count += shoppingCartMapper.deleteByExample(example);
+        }
+        return count;
+    }
+
+    @Override
+    public int deleteShoppingCartsExcept(Map<Long, List<Long>> kept) {
+        int count = 0;
+        int lines = 0;
+        ShoppingCartExample example = new ShoppingCartExample();
+        for (Map.Entry<Long, List<Long>> entry : kept.entrySet()) {
+            Long uid = entry.getKey();
+            List<Long> foodIds = entry.getValue();
+            if (foodIds.isEmpty()) {
+                example.or().andUserIdEqualTo(uid);
+            } else {
+                // 菜品项的setmeal_id为空，not in对空值不成立，两个条件分别匹配菜品项和套餐项
+                example.or().andUserIdEqualTo(uid).andDishIdNotIn(foodIds);
+                example.or().andUserIdEqualTo(uid).andSetmealIdNotIn(foodIds);
+            }
+            lines += foodIds.size() + 1;
+            if (lines >= DELETE_BATCH_SIZE) {
+                count += shoppingCartMapper.deleteByExample(example);
+                example = new ShoppingCartExample();
+                lines = 0;
+            }
+        }
+        if (lines > 0) {
+            count += shoppingCartMapper.deleteByExample(example);
+        }
+        return count;
+    }
 }
@@ -0,0 +1,70 @@
+package com.bei.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * 按行写入CSV，数据经过缓冲后直接写入输出流
+ * 以UTF-8 BOM开头，Excel可以正确识别中文，
+ * 文本中的用户输入可能以公式字符开头，写入时加上单引号前缀，防止在Excel中被当作公式执行
+ * */
+public class CsvWriter {
+
+    private final Writer writer;
+
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    public CsvWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+    }
+
+    /**
+     * 写入一行，null写为空值
+     * */
+    public void row(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            write(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void write(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value instanceof Date ? dateFormat.format((Date) value) : value.toString();
+        if (value instanceof CharSequence && isFormula(text)) {
+            // 文本以公式字符开头时Excel会把它当作公式执行，加上单引号作为普通文本显示
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private boolean isFormula(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        char first = text.charAt(0);
+        return first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+    }
+}
@@ -0,0 +1,45 @@
+package com.bei.utils;
+
+import com.github.pagehelper.Page;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 对内存中的列表分页，返回结果与PageHelper查询的结果相同，可以直接用于PageInfo
+ * */
+public final class PageUtils {
+
+    private PageUtils() {}
+
+    /**
+     * @param list 全部数据
+     * @param page 页码，从1开始
+     * @param pageSize 每页数据量，不大于0时返回全部数据
+     * */
+    public static <T> Page<T> page(List<T> list, int page, int pageSize) {
+        int pageNum = Math.max(page, 1);
+        Page<T> result = new Page<>(pageNum, pageSize, false);
+        if (pageSize <= 0) {
+            result.addAll(list);
+        } else {
+            long from = (long) (pageNum - 1) * pageSize;
+            if (from < list.size()) {
+                result.addAll(list.subList((int) from, (int) Math.min(from + pageSize, list.size())));
+            }
+        }
+        result.setTotal(list.size());
+        return result;
+    }
+
+    /**
+     * 转换当前页的数据，分页信息不变
+     * @param converter 整页转换，便于批量查询
+     * */
+    public static <T, R> Page<R> convert(Page<T> page, Function<List<T>, List<R>> converter) {
+        Page<R> result = new Page<>(page.getPageNum(), page.getPageSize(), false);
+        result.addAll(converter.apply(page));
+        result.setTotal(page.getTotal());
+        return result;
+    }
+}
@@ -0,0 +1,29 @@
+package com.bei.vo;
+
+import com.bei.dto.DishDto;
+import com.bei.model.Category;
+import com.bei.model.Setmeal;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 菜单中的一个分类，包含该分类下的所有菜品(含口味)和套餐，不区分售卖状态
+ * 创建后不再修改
+ * */
+@Getter
+public class MenuCategoryVo {
+
+    private final Category category;
+
+    private final List<DishDto> dishes;
+
+    private final List<Setmeal> setmeals;
+
+    public MenuCategoryVo(Category category, List<DishDto> dishes, List<Setmeal> setmeals) {
+        this.category = category;
+        this.dishes = Collections.unmodifiableList(dishes);
+        this.setmeals = Collections.unmodifiableList(setmeals);
+    }
+}
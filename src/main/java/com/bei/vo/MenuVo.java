@@ -0,0 +1,22 @@
+package com.bei.vo;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 顾客端完整菜单，只包含起售的菜品和套餐
+ * */
+@Getter
+public class MenuVo {
+
+    /** 菜单版本号，与快照版本相同 */
+    private final long version;
+
+    private final List<MenuCategoryVo> categories;
+
+    public MenuVo(long version, List<MenuCategoryVo> categories) {
+        this.version = version;
+        this.categories = categories;
+    }
+}
@@ -0,0 +1,179 @@
+package com.bei.common.cart;
+
+import com.bei.model.ShoppingCart;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 购物车的变更记录，验证每次取出的新增、删除和整个写入的项
+ * 没有docker时跳过
+ * */
+@Testcontainers(disabledWithoutDocker = true)
+class CartStoreChangesTest extends CartStoreTestSupport {
+
+    private static final Long UID = 1417414526093082626L;
+
+    private static final Long CHICKEN = 1397849739276890114L;
+
+    private static final Long FISH = 1397850140982161409L;
+
+    private static final Long RIBS = 1397850392090947585L;
+
+    @Test
+    void loadedCartOnlyTakesChangedItems() {
+        cartStore.load(UID, Arrays.asList(line(CHICKEN, 1), line(FISH, 2)));
+        cartStore.add(UID, item(CHICKEN));
+        cartStore.add(UID, item(RIBS));
+
+        CartChanges changes = take();
+
+        assertEquals(set(CHICKEN, RIBS), foodIds(changes));
+        assertEquals(2, number(changes, CHICKEN));
+        assertEquals(1, number(changes, RIBS));
+        assertTrue(changes.getRemoved().isEmpty());
+        assertTrue(changes.getReplaced().isEmpty());
+        assertTrue(take().getSaved().isEmpty());
+    }
+
+    @Test
+    void untrackedCartIsTakenInFull() {
+        cartStore.add(UID, item(CHICKEN));
+        cartStore.add(UID, item(FISH));
+
+        CartChanges changes = take();
+
+        assertEquals(set(CHICKEN, FISH), foodIds(changes));
+        assertEquals(set(CHICKEN, FISH), new HashSet<>(changes.getReplaced().get(UID)));
+        assertTrue(changes.getRemoved().isEmpty());
+
+        // 整个写入之后开始记录变更，下一次只取出变化的项
+        cartStore.add(UID, item(RIBS));
+        CartChanges next = take();
+        assertEquals(set(RIBS), foodIds(next));
+        assertTrue(next.getReplaced().isEmpty());
+    }
+
+    @Test
+    void removedItemIsTakenAsRemoved() {
+        cartStore.load(UID, Arrays.asList(line(CHICKEN, 1), line(FISH, 1)));
+        cartStore.sub(UID, String.valueOf(CHICKEN));
+
+        CartChanges changes = take();
+
+        assertTrue(changes.getSaved().isEmpty());
+        assertEquals(Collections.singletonList(CHICKEN), changes.getRemoved().get(UID));
+        assertTrue(changes.getReplaced().isEmpty());
+    }
+
+    @Test
+    void removedAndAddedAgainIsTakenAsSaved() {
+        ShoppingCart loaded = line(CHICKEN, 1);
+        cartStore.load(UID, Collections.singletonList(loaded));
+        cartStore.sub(UID, String.valueOf(CHICKEN));
+        cartStore.add(UID, item(CHICKEN));
+
+        CartChanges changes = take();
+
+        assertEquals(set(CHICKEN), foodIds(changes));
+        assertEquals(1, number(changes, CHICKEN));
+        // 重新加入的是新的一项，使用新的主键
+        assertNotEquals(loaded.getId(), changes.getSaved().get(0).getId());
+        assertTrue(changes.getRemoved().isEmpty());
+        assertTrue(changes.getReplaced().isEmpty());
+    }
+
+    @Test
+    void clearedCartHasNoChanges() {
+        cartStore.load(UID, Collections.singletonList(line(CHICKEN, 1)));
+        cartStore.add(UID, item(FISH));
+        cartStore.clear(UID);
+
+        CartChanges changes = take();
+
+        assertEquals(0, changes.size());
+        assertTrue(changes.getReplaced().isEmpty());
+        assertTrue(changes.getTaken().isEmpty());
+    }
+
+    @Test
+    void restoredChangesAreTakenAgain() {
+        cartStore.load(UID, Collections.singletonList(line(CHICKEN, 1)));
+        cartStore.add(UID, item(FISH));
+        cartStore.sub(UID, String.valueOf(CHICKEN));
+        CartChanges failed = take();
+
+        cartStore.restoreChanges(failed);
+        cartStore.add(UID, item(RIBS));
+        CartChanges changes = take();
+
+        assertEquals(set(FISH, RIBS), foodIds(changes));
+        assertEquals(Collections.singletonList(CHICKEN), changes.getRemoved().get(UID));
+        assertTrue(changes.getReplaced().isEmpty());
+    }
+
+    @Test
+    void restoredFullCartIsTakenInFullAgain() {
+        cartStore.add(UID, item(CHICKEN));
+        cartStore.add(UID, item(FISH));
+        CartChanges failed = take();
+
+        cartStore.restoreChanges(failed);
+        CartChanges changes = take();
+
+        assertEquals(set(CHICKEN, FISH), foodIds(changes));
+        assertEquals(set(CHICKEN, FISH), new HashSet<>(changes.getReplaced().get(UID)));
+        assertEquals(new HashSet<>(failed.getTaken().get(UID)), new HashSet<>(changes.getTaken().get(UID)));
+    }
+
+    private CartChanges take() {
+        return cartStore.takeChanges(Collections.singletonList(UID));
+    }
+
+    private Set<Long> foodIds(CartChanges changes) {
+        return changes.getSaved().stream()
+                .map(line -> Long.valueOf(CartStore.foodId(line)))
+                .collect(Collectors.toSet());
+    }
+
+    private int number(CartChanges changes, Long dishId) {
+        Map<Long, Integer> numbers = changes.getSaved().stream()
+                .collect(Collectors.toMap(ShoppingCart::getDishId, ShoppingCart::getNumber));
+        return numbers.get(dishId);
+    }
+
+    private Set<Long> set(Long... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    /**
+     * 数据库中已有的购物车项
+     * */
+    private ShoppingCart line(Long dishId, int number) {
+        ShoppingCart line = item(dishId);
+        line.setId(dishId + 1);
+        line.setNumber(number);
+        return line;
+    }
+
+    private ShoppingCart item(Long dishId) {
+        ShoppingCart cart = new ShoppingCart();
+        cart.setName("菜品" + dishId);
+        cart.setUserId(UID);
+        cart.setDishId(dishId);
+        cart.setNumber(1);
+        cart.setAmount(new BigDecimal("38.00"));
+        return cart;
+    }
+}
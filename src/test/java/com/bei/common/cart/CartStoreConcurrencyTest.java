@@ -0,0 +1,132 @@
+package com.bei.common.cart;
+
+import com.bei.model.ShoppingCart;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个线程同时增减同一个购物车项，验证没有丢失更新
+ * 没有docker时跳过
+ * */
+@Testcontainers(disabledWithoutDocker = true)
+class CartStoreConcurrencyTest extends CartStoreTestSupport {
+
+    private static final int THREADS = 16;
+
+    private static final int TIMES = 200;
+
+    private static final Long UID = 1417414526093082626L;
+
+    private static final Long DISH_ID = 1397849739276890114L;
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        run(THREADS, () -> {
+            for (int i = 0; i < TIMES; i++) {
+                cartStore.add(UID, item());
+            }
+            return null;
+        });
+        assertEquals(THREADS * TIMES, number());
+    }
+
+    @Test
+    void concurrentAddsAndSubsCancelOut() throws Exception {
+        for (int i = 0; i < THREADS * TIMES; i++) {
+            cartStore.add(UID, item());
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean add = t % 2 == 0;
+            tasks.add(() -> {
+                for (int i = 0; i < TIMES; i++) {
+                    if (add) {
+                        cartStore.add(UID, item());
+                    } else {
+                        cartStore.sub(UID, String.valueOf(DISH_ID));
+                    }
+                }
+                return null;
+            });
+        }
+        run(tasks);
+        assertEquals(THREADS * TIMES, number());
+    }
+
+    @Test
+    void concurrentSubsRemoveTheLineExactlyOnce() throws Exception {
+        for (int i = 0; i < THREADS * TIMES; i++) {
+            cartStore.add(UID, item());
+        }
+        run(THREADS, () -> {
+            for (int i = 0; i < TIMES; i++) {
+                cartStore.sub(UID, String.valueOf(DISH_ID));
+            }
+            return null;
+        });
+        assertTrue(cartStore.getCart(UID).isEmpty());
+        assertNull(cartStore.sub(UID, String.valueOf(DISH_ID)));
+    }
+
+    private int number() {
+        List<ShoppingCart> cart = cartStore.getCart(UID);
+        assertEquals(1, cart.size());
+        return cart.get(0).getNumber();
+    }
+
+    private ShoppingCart item() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.setName("辣子鸡丁");
+        cart.setUserId(UID);
+        cart.setDishId(DISH_ID);
+        cart.setDishFlavor("微辣");
+        cart.setNumber(1);
+        cart.setAmount(new BigDecimal("78.00"));
+        return cart;
+    }
+
+    private void run(int threads, Callable<Void> task) throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(task);
+        }
+        run(tasks);
+    }
+
+    /**
+     * 所有任务同时开始执行，任一任务失败时抛出其异常
+     * */
+    private void run(List<Callable<Void>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
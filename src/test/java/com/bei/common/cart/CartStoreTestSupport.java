@@ -0,0 +1,65 @@
+package com.bei.common.cart;
+
+import com.bei.common.codec.BinaryValueCodec;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * 在容器中启动redis，每个测试之前清空数据并创建新的CartStore
+ * */
+abstract class CartStoreTestSupport {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:6.2-alpine"))
+            .withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+
+    protected static StringRedisTemplate redisTemplate;
+
+    protected CartStore cartStore;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.flushAll();
+            return null;
+        });
+        RedisTemplate<String, byte[]> byteRedisTemplate = new RedisTemplate<>();
+        byteRedisTemplate.setConnectionFactory(connectionFactory);
+        byteRedisTemplate.setKeySerializer(RedisSerializer.string());
+        byteRedisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        byteRedisTemplate.setHashKeySerializer(RedisSerializer.string());
+        byteRedisTemplate.setHashValueSerializer(RedisSerializer.byteArray());
+        byteRedisTemplate.afterPropertiesSet();
+        CartFlushPartitions partitions = new CartFlushPartitions();
+        ReflectionTestUtils.setField(partitions, "partitions", 16);
+        cartStore = new CartStore();
+        ReflectionTestUtils.setField(cartStore, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cartStore, "byteRedisTemplate", byteRedisTemplate);
+        ReflectionTestUtils.setField(cartStore, "valueCodec", new BinaryValueCodec(true, "com.bei."));
+        ReflectionTestUtils.setField(cartStore, "cartFlushPartitions", partitions);
+    }
+}
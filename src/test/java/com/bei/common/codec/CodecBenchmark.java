@@ -0,0 +1,103 @@
+package com.bei.common.codec;
+
+import com.alibaba.fastjson.JSON;
+import com.bei.common.CommonResult;
+import com.bei.dto.DishDto;
+import com.bei.model.DishFlavor;
+import com.bei.model.ShoppingCart;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 对比fastjson和二进制编码的数据大小和编解码耗时
+ * 数据为一个分类的菜品列表(与/dish/list的缓存内容相同)和一个购物车项，
+ * 位于测试代码中，不会打包进应用，直接运行main方法，不需要启动spring容器
+ * */
+public class CodecBenchmark {
+
+    private static final int WARM_UP = 20_000;
+
+    private static final int ITERATIONS = 100_000;
+
+    /** 保存每次的结果，防止被JIT优化掉 */
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        BinaryValueCodec codec = new BinaryValueCodec(true, "com.bei.");
+        run("菜品列表", menu(20, 3), codec, CommonResult.class);
+        run("购物车项", cartLine(), codec, ShoppingCart.class);
+    }
+
+    private static <T> void run(String title, T value, BinaryValueCodec codec, Class<T> type) {
+        byte[] json = JSON.toJSONBytes(value);
+        byte[] binary = codec.encode(value);
+        System.out.printf("%s: fastjson %d字节, 二进制 %d字节 (%.0f%%)%n",
+                title, json.length, binary.length, 100.0 * binary.length / json.length);
+        report("  fastjson 编码", value, v -> JSON.toJSONBytes(v));
+        report("  二进制   编码", value, codec::encode);
+        report("  fastjson 解码", json, bytes -> JSON.parseObject(bytes, type));
+        report("  二进制   解码", binary, bytes -> codec.decode(bytes, type));
+    }
+
+    private static <T> void report(String title, T input, Function<T, ?> operation) {
+        for (int i = 0; i < WARM_UP; i++) {
+            sink = operation.apply(input);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = operation.apply(input);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %.0f ns/op%n", title, (double) elapsed / ITERATIONS);
+    }
+
+    private static CommonResult<List<DishDto>> menu(int dishes, int flavors) {
+        List<DishDto> list = new ArrayList<>();
+        for (int i = 0; i < dishes; i++) {
+            DishDto dish = new DishDto();
+            dish.setId(1397849739276890114L + i);
+            dish.setName("辣子鸡丁" + i);
+            dish.setCategoryId(1397844263642378242L);
+            dish.setCategoryName("湘菜");
+            dish.setPrice(new BigDecimal("7800.00"));
+            dish.setCode("");
+            dish.setImage("f966a38e-0780-40be-bb52-5699d13cb3d9.jpg");
+            dish.setDescription("辣子鸡丁，辣子鸡丁，永远的魂");
+            dish.setStatus(1);
+            List<DishFlavor> flavorList = new ArrayList<>();
+            for (int j = 0; j < flavors; j++) {
+                DishFlavor flavor = new DishFlavor();
+                flavor.setId(1397849739297861633L + i * flavors + j);
+                flavor.setDishId(dish.getId());
+                flavor.setName("辣度");
+                flavor.setValue("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]");
+                flavor.setCreateTime(new Date());
+                flavor.setUpdateTime(new Date());
+                flavor.setCreateUser(1L);
+                flavor.setUpdateUser(1L);
+                flavor.setIsDeleted(0);
+                flavorList.add(flavor);
+            }
+            dish.setFlavors(flavorList);
+            list.add(dish);
+        }
+        return CommonResult.success(list);
+    }
+
+    private static ShoppingCart cartLine() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.setName("辣子鸡丁");
+        cart.setImage("f966a38e-0780-40be-bb52-5699d13cb3d9.jpg");
+        cart.setUserId(1417414526093082626L);
+        cart.setDishId(1397849739276890114L);
+        cart.setDishFlavor("微辣");
+        cart.setNumber(2);
+        cart.setAmount(new BigDecimal("78.00"));
+        cart.setCreateTime(new Date());
+        return cart;
+    }
+}
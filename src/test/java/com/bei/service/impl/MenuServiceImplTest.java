@@ -0,0 +1,173 @@
+package com.bei.service.impl;
+
+import com.bei.common.cache.CachedResponseWriter;
+import com.bei.common.search.MenuSearchIndex;
+import com.bei.dto.DishDto;
+import com.bei.mapper.CategoryMapper;
+import com.bei.mapper.DishFlavorMapper;
+import com.bei.mapper.DishMapper;
+import com.bei.mapper.SetmealMapper;
+import com.bei.model.Category;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 加载菜单时执行的sql数量不随菜品数量增加
+ * 在容器中启动mysql，通过mybatis插件统计实际执行的语句，没有docker时跳过
+ * */
+@Testcontainers(disabledWithoutDocker = true)
+class MenuServiceImplTest {
+
+    private static final Long CATEGORY_ID = 1397844263642378242L;
+
+    private static final Long FIRST_DISH_ID = 1397849739276890114L;
+
+    /** 重新加载分类、菜品、口味、套餐各一条，读取分类使用内存中的字典 */
+    private static final int STATEMENTS = 4;
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>(DockerImageName.parse("mysql:8.0"))
+            .withInitScript("sql/menu.sql");
+
+    private static final StatementCounter COUNTER = new StatementCounter();
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private static SqlSessionTemplate sqlSession;
+
+    private CategoryServiceImpl categoryService;
+
+    private MenuServiceImpl menuService;
+
+    @BeforeAll
+    static void connect() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(MYSQL.getJdbcUrl(),
+                MYSQL.getUsername(), MYSQL.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setMapperLocations(new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:com/bei/mapper/*.xml"));
+        factoryBean.setPlugins(COUNTER);
+        sqlSession = new SqlSessionTemplate(factoryBean.getObject());
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.update("DELETE FROM dish_flavor");
+        jdbcTemplate.update("DELETE FROM dish");
+        jdbcTemplate.update("DELETE FROM setmeal");
+        jdbcTemplate.update("DELETE FROM category");
+
+        categoryService = new CategoryServiceImpl();
+        ReflectionTestUtils.setField(categoryService, "categoryMapper", sqlSession.getMapper(CategoryMapper.class));
+        DishServiceImpl dishService = new DishServiceImpl();
+        ReflectionTestUtils.setField(dishService, "dishMapper", sqlSession.getMapper(DishMapper.class));
+        DishFlavorServiceImpl dishFlavorService = new DishFlavorServiceImpl();
+        ReflectionTestUtils.setField(dishFlavorService, "dishFlavorMapper", sqlSession.getMapper(DishFlavorMapper.class));
+        SetMealServiceImpl setmealService = new SetMealServiceImpl();
+        ReflectionTestUtils.setField(setmealService, "setmealMapper", sqlSession.getMapper(SetmealMapper.class));
+
+        // 版本号为空时按0处理，响应体的内容与查询次数无关
+        RedisTemplate<?, ?> redisTemplate = mock(RedisTemplate.class, RETURNS_DEEP_STUBS);
+        CachedResponseWriter responseWriter = mock(CachedResponseWriter.class);
+        when(responseWriter.serialize(any())).thenReturn(new byte[0]);
+
+        menuService = new MenuServiceImpl();
+        ReflectionTestUtils.setField(menuService, "categoryService", categoryService);
+        ReflectionTestUtils.setField(menuService, "dishService", dishService);
+        ReflectionTestUtils.setField(menuService, "dishFlavorService", dishFlavorService);
+        ReflectionTestUtils.setField(menuService, "setmealService", setmealService);
+        ReflectionTestUtils.setField(menuService, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(menuService, "responseWriter", responseWriter);
+        ReflectionTestUtils.setField(menuService, "menuSearchIndex", new MenuSearchIndex());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 50})
+    void statementCountDoesNotGrowWithDishes(int count) {
+        insertMenu(count);
+        COUNTER.reset();
+
+        menuService.rebuild();
+        List<DishDto> dishes = menuService.getSnapshot().getDishes(CATEGORY_ID, 1);
+        // 后台菜品列表按分类id批量读取分类名称
+        Set<Long> categoryIds = dishes.stream().map(DishDto::getCategoryId).collect(Collectors.toSet());
+        Map<Long, Category> categories = categoryService.getCategoryByIds(categoryIds);
+
+        assertEquals(count, dishes.size());
+        dishes.forEach(dish -> assertEquals(1, dish.getFlavors().size()));
+        assertEquals(1, categories.size());
+        assertEquals(STATEMENTS, COUNTER.get());
+    }
+
+    private void insertMenu(int count) {
+        jdbcTemplate.update("INSERT INTO category (id, type, name, sort) VALUES (?, ?, ?, ?)",
+                CATEGORY_ID, Category.DISH_CATEGORY, "湘菜", 1);
+        List<Object[]> dishes = new ArrayList<>();
+        List<Object[]> flavors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long dishId = FIRST_DISH_ID + i;
+            dishes.add(new Object[]{dishId, "辣子鸡丁" + i, CATEGORY_ID, 7800, 1, i});
+            flavors.add(new Object[]{dishId, dishId, "辣度", "[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dish (id, name, category_id, price, status, sort) VALUES (?, ?, ?, ?, ?, ?)",
+                dishes);
+        jdbcTemplate.batchUpdate("INSERT INTO dish_flavor (id, dish_id, name, value) VALUES (?, ?, ?, ?)", flavors);
+    }
+
+    /**
+     * 统计准备执行的sql语句数量
+     * */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    private static class StatementCounter implements Interceptor {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            count.incrementAndGet();
+            return invocation.proceed();
+        }
+
+        int get() {
+            return count.get();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+    }
+}
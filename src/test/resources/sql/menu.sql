@@ -0,0 +1,63 @@
+-- 菜单相关表，只保留测试用到的列
+CREATE TABLE `category` (
+  `id` bigint NOT NULL,
+  `type` int DEFAULT NULL,
+  `name` varchar(64) NOT NULL,
+  `sort` int NOT NULL DEFAULT '0',
+  `create_time` datetime DEFAULT NULL,
+  `update_time` datetime DEFAULT NULL,
+  `create_user` bigint DEFAULT NULL,
+  `update_user` bigint DEFAULT NULL,
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE `dish` (
+  `id` bigint NOT NULL,
+  `name` varchar(64) NOT NULL,
+  `category_id` bigint NOT NULL,
+  `price` decimal(10,2) DEFAULT NULL,
+  `code` varchar(64) DEFAULT NULL,
+  `image` varchar(200) DEFAULT NULL,
+  `description` varchar(400) DEFAULT NULL,
+  `status` int NOT NULL DEFAULT '1',
+  `sort` int NOT NULL DEFAULT '0',
+  `create_time` datetime DEFAULT NULL,
+  `update_time` datetime DEFAULT NULL,
+  `create_user` bigint DEFAULT NULL,
+  `update_user` bigint DEFAULT NULL,
+  `is_deleted` int NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  KEY `idx_dish_category` (`category_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE `dish_flavor` (
+  `id` bigint NOT NULL,
+  `dish_id` bigint NOT NULL,
+  `name` varchar(64) DEFAULT NULL,
+  `value` varchar(500) DEFAULT NULL,
+  `create_time` datetime DEFAULT NULL,
+  `update_time` datetime DEFAULT NULL,
+  `create_user` bigint DEFAULT NULL,
+  `update_user` bigint DEFAULT NULL,
+  `is_deleted` int NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  KEY `idx_dish_flavor_dish` (`dish_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE `setmeal` (
+  `id` bigint NOT NULL,
+  `category_id` bigint NOT NULL,
+  `name` varchar(64) NOT NULL,
+  `price` decimal(10,2) NOT NULL,
+  `status` int DEFAULT NULL,
+  `code` varchar(32) DEFAULT NULL,
+  `description` varchar(512) DEFAULT NULL,
+  `image` varchar(255) DEFAULT NULL,
+  `create_time` datetime DEFAULT NULL,
+  `update_time` datetime DEFAULT NULL,
+  `create_user` bigint DEFAULT NULL,
+  `update_user` bigint DEFAULT NULL,
+  `is_deleted` int NOT NULL DEFAULT '0',
+  PRIMARY KEY (`id`),
+  KEY `idx_setmeal_category` (`category_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;